@@ -1,10 +1,13 @@
 package edu.upenn.zootester;
 
+import edu.upenn.zootester.ensemble.TimingCalibration;
 import edu.upenn.zootester.ensemble.ZKHelper;
+import edu.upenn.zootester.ensemble.ZKTimingProfile;
 import edu.upenn.zootester.scenario.*;
 import edu.upenn.zootester.util.AssertionFailureError;
 import edu.upenn.zootester.util.Config;
 import edu.upenn.zootester.util.ConfigException;
+import edu.upenn.zootester.worker.Worker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,6 +19,25 @@ public class ZooTester {
         try {
             final Config config = Config.parseArgs(args);
             ZKHelper.setBasePort(config.getBasePort());
+            switch (config.getPersistence()) {
+                case "disk":
+                    break;
+                case "memory":
+                    ZKHelper.useMemoryPersistence();
+                    break;
+                default:
+                    LOG.error("Unknown persistence mode!");
+                    throw new Exception("Unknown persistence mode");
+            }
+            if (config.getTiming().equals("calibrate")) {
+                ZKHelper.setTimingProfile(new TimingCalibration(config.getServers()).calibrate());
+            } else {
+                ZKHelper.setTimingProfile(ZKTimingProfile.forName(config.getTiming()));
+            }
+            if (config.isWorker()) {
+                new Worker(config).run();
+                System.exit(0);
+            }
             final Scenario scenario;
             switch (config.getScenario()) {
                 case "divergence":
@@ -47,6 +69,12 @@ public class ZooTester {
                 case "baseline-interesting":
                     scenario = new InterestingBaselineScenario();
                     break;
+                case "shrink":
+                    scenario = new ShrinkScenario();
+                    break;
+                case "replay":
+                    scenario = new ReplayScenario();
+                    break;
                 default:
                     LOG.error("Unknown scenario!");
                     throw new Exception("Unknown scenario");
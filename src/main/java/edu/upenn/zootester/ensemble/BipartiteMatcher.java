@@ -0,0 +1,125 @@
+package edu.upenn.zootester.ensemble;
+
+import java.util.Arrays;
+
+/***
+ * Computes maximum matchings in bipartite graphs with the Hopcroft-Karp algorithm. We use it to assign
+ * clients to servers, where the left vertices are servers and the right vertices are clients.
+ * <p>
+ * The matching is grown from an initial matching by augmenting paths, so left vertices that are matched
+ * initially stay matched, possibly to other right vertices.
+ */
+final class BipartiteMatcher {
+
+    private static final int FREE = -1;
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final boolean[][] canMatch;
+    private final int totalLeft;
+    private final int totalRight;
+    private final int[] matchOfLeft;
+    private final int[] matchOfRight;
+    private final int[] layer;
+
+    private BipartiteMatcher(final boolean[][] canMatch, final int totalRight, final int[] matchOfLeft) {
+        this.canMatch = canMatch;
+        this.totalLeft = canMatch.length;
+        this.totalRight = totalRight;
+        this.matchOfLeft = matchOfLeft;
+        this.matchOfRight = new int[totalRight];
+        this.layer = new int[totalLeft];
+        Arrays.fill(matchOfRight, FREE);
+        for (int left = 0; left < totalLeft; ++left) {
+            final int right = matchOfLeft[left];
+            if (right != FREE && (!canMatch[left][right] || matchOfRight[right] != FREE)) {
+                // Drop initial pairs that are no longer allowed, or that conflict with earlier ones
+                matchOfLeft[left] = FREE;
+            } else if (right != FREE) {
+                matchOfRight[right] = left;
+            }
+        }
+    }
+
+    /***
+     * Extends the matching in matchOfLeft to a maximum matching.
+     *
+     * @param canMatch    canMatch[l][r] is true if the left vertex l may be matched to the right vertex r
+     * @param totalRight  The number of right vertices
+     * @param matchOfLeft The initial matching, where matchOfLeft[l] is the right vertex matched to l, or -1 if l
+     *                    is unmatched. It is updated in place to the maximum matching.
+     * @return The size of the maximum matching
+     */
+    static int maximumMatching(final boolean[][] canMatch, final int totalRight, final int[] matchOfLeft) {
+        return new BipartiteMatcher(canMatch, totalRight, matchOfLeft).run();
+    }
+
+    private int run() {
+        while (buildLayers()) {
+            for (int left = 0; left < totalLeft; ++left) {
+                if (matchOfLeft[left] == FREE) {
+                    augment(left);
+                }
+            }
+        }
+        int size = 0;
+        for (int left = 0; left < totalLeft; ++left) {
+            if (matchOfLeft[left] != FREE) {
+                ++size;
+            }
+        }
+        return size;
+    }
+
+    /***
+     * Layers the left vertices by their distance from the free left vertices along alternating paths.
+     *
+     * @return Whether there is an augmenting path
+     */
+    private boolean buildLayers() {
+        final int[] queue = new int[totalLeft];
+        int head = 0;
+        int tail = 0;
+        for (int left = 0; left < totalLeft; ++left) {
+            if (matchOfLeft[left] == FREE) {
+                layer[left] = 0;
+                queue[tail++] = left;
+            } else {
+                layer[left] = INFINITY;
+            }
+        }
+        boolean foundFreeRight = false;
+        while (head < tail) {
+            final int left = queue[head++];
+            for (int right = 0; right < totalRight; ++right) {
+                if (!canMatch[left][right]) {
+                    continue;
+                }
+                final int next = matchOfRight[right];
+                if (next == FREE) {
+                    foundFreeRight = true;
+                } else if (layer[next] == INFINITY) {
+                    layer[next] = layer[left] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return foundFreeRight;
+    }
+
+    private boolean augment(final int left) {
+        for (int right = 0; right < totalRight; ++right) {
+            if (!canMatch[left][right]) {
+                continue;
+            }
+            final int next = matchOfRight[right];
+            if (next == FREE || (layer[next] == layer[left] + 1 && augment(next))) {
+                matchOfLeft[left] = right;
+                matchOfRight[right] = left;
+                return true;
+            }
+        }
+        // No augmenting path goes through this vertex in the current phase
+        layer[left] = INFINITY;
+        return false;
+    }
+}
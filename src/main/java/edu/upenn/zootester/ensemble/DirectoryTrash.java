@@ -0,0 +1,100 @@
+package edu.upenn.zootester.ensemble;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Deletes directory trees off the critical path. A discarded directory is renamed into the trash directory,
+ * which is a constant-time operation on the same file system, and a background thread deletes it from there.
+ */
+class DirectoryTrash {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryTrash.class);
+
+    private final Path trashDir;
+    private final AtomicLong counter = new AtomicLong();
+    private final BlockingQueue<Path> pending = new LinkedBlockingQueue<>();
+
+    DirectoryTrash(final Path trashDir) throws IOException {
+        this.trashDir = Files.createDirectories(trashDir);
+        final Thread deleter = new Thread(this::deleteLoop, "DirectoryTrash");
+        deleter.setDaemon(true);
+        deleter.start();
+    }
+
+    /***
+     * Moves the directory out of the way and schedules it for deletion. If it cannot be moved into the trash,
+     * for example because it's on another file system, it is deleted right away.
+     */
+    void discard(final Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        final Path trashed = trashDir.resolve(dir.getFileName() + "-" + counter.incrementAndGet());
+        try {
+            Files.move(dir, trashed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            LOG.warn("Couldn't move {} to the trash, deleting it in place", dir, e);
+            deleteTree(dir);
+            return;
+        }
+        LOG.debug("Moved {} to the trash", dir);
+        pending.add(trashed);
+    }
+
+    private void deleteLoop() {
+        while (true) {
+            final Path dir;
+            try {
+                dir = pending.take();
+            } catch (final InterruptedException e) {
+                return;
+            }
+            try {
+                deleteTree(dir);
+            } catch (final IOException e) {
+                LOG.warn("Couldn't delete {}", dir, e);
+            }
+        }
+    }
+
+    /***
+     * Deletes the directory tree. Entries that disappear while we walk the tree, because someone else
+     * deletes them concurrently, are skipped.
+     */
+    static void deleteTree(final Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path directory, final IOException e) throws IOException {
+                Files.deleteIfExists(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
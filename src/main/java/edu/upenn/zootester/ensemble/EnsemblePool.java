@@ -0,0 +1,127 @@
+package edu.upenn.zootester.ensemble;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Keeps standby ensembles ready while the current execution runs. An ensemble is prepared for an execution
+ * in the background, and when the execution releases it, it is stopped and prepared again in the background,
+ * so that neither the teardown of the previous execution nor the startup of the next one is on the critical
+ * path.
+ */
+public class EnsemblePool implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EnsemblePool.class);
+
+    /***
+     * Brings a fresh or stopped ensemble into the state in which an execution starts.
+     */
+    @FunctionalInterface
+    public interface Preparer {
+        void prepare(ZKEnsemble ensemble) throws Exception;
+    }
+
+    private final Preparer preparer;
+    private final List<ZKEnsemble> ensembles = new ArrayList<>();
+    private final BlockingQueue<Prepared> ready = new LinkedBlockingQueue<>();
+    private final ExecutorService executor;
+
+    /***
+     * @param totalNodes The number of servers in each ensemble
+     * @param proxied    Whether the ensembles are proxied, see {@link ZKEnsemble#ZKEnsemble(int, boolean)}
+     * @param standby    The number of ensembles kept ready in addition to the one in use
+     */
+    public EnsemblePool(final int totalNodes, final boolean proxied, final int standby, final Preparer preparer)
+            throws IOException {
+        this.preparer = preparer;
+        this.executor = Executors.newFixedThreadPool(standby + 1, runnable -> {
+            final Thread thread = new Thread(runnable, "EnsemblePool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i <= standby; ++i) {
+            final ZKEnsemble ensemble = new ZKEnsemble(totalNodes, proxied);
+            ensemble.init();
+            ensembles.add(ensemble);
+            executor.submit(() -> prepare(ensemble, false));
+        }
+        LOG.info("Started an ensemble pool with {} standby ensembles", standby);
+    }
+
+    /***
+     * Takes the next ready ensemble, waiting for one if none is ready yet.
+     *
+     * @throws IOException If the ensemble couldn't be prepared. The ensemble is recycled in that case.
+     */
+    public ZKEnsemble acquire() throws InterruptedException, IOException {
+        final Prepared prepared = ready.take();
+        if (prepared.failure != null) {
+            release(prepared.ensemble);
+            throw new IOException("Couldn't prepare the ensemble", prepared.failure);
+        }
+        return prepared.ensemble;
+    }
+
+    /***
+     * Returns an ensemble after an execution. It is stopped and prepared for the next execution in the
+     * background.
+     */
+    public void release(final ZKEnsemble ensemble) {
+        executor.submit(() -> prepare(ensemble, true));
+    }
+
+    private void prepare(final ZKEnsemble ensemble, final boolean stopFirst) {
+        try {
+            if (stopFirst) {
+                ensemble.stopEnsemble();
+            }
+            preparer.prepare(ensemble);
+            ready.add(new Prepared(ensemble, null));
+        } catch (final Exception | Error e) {
+            LOG.error("Exception while preparing a standby ensemble", e);
+            ready.add(new Prepared(ensemble, e));
+        }
+    }
+
+    /***
+     * Stops and tears down all ensembles of the pool, including those that are still prepared for executions
+     * that never came.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            for (final var ensemble : ensembles) {
+                ensemble.stopEnsemble();
+            }
+        } catch (final InterruptedException e) {
+            LOG.warn("Interrupted while stopping the pooled ensembles");
+            Thread.currentThread().interrupt();
+        } finally {
+            for (final var ensemble : ensembles) {
+                ensemble.tearDown();
+            }
+        }
+    }
+
+    private static class Prepared {
+
+        private final ZKEnsemble ensemble;
+        private final Throwable failure;
+
+        Prepared(final ZKEnsemble ensemble, final Throwable failure) {
+            this.ensemble = ensemble;
+            this.failure = failure;
+        }
+    }
+}
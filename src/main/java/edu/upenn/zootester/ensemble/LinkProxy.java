@@ -0,0 +1,244 @@
+package edu.upenn.zootester.ensemble;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/***
+ * Forwards TCP connections from a local port to a target port, so that the traffic between two peers can be
+ * cut or delayed without touching the peers themselves. In mode CONNECTED, traffic is forwarded after the
+ * configured delay. In mode DROP, the connections stay open but all traffic is silently discarded, so the
+ * peers only notice the failure through their timeouts. In mode PARTITION, all connections are reset and new
+ * ones are refused. Switching from DROP or PARTITION back to CONNECTED resets the connections that were open
+ * during the fault, since part of their traffic is lost.
+ */
+class LinkProxy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LinkProxy.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    enum Mode {
+        CONNECTED, DROP, PARTITION
+    }
+
+    private final String name;
+    private final int targetPort;
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+
+    // Guarded by this
+    private final Set<Connection> connections = new HashSet<>();
+    private Mode mode = Mode.CONNECTED;
+
+    private volatile long delayMillis = 0;
+    private volatile boolean closed = false;
+
+    LinkProxy(final String name, final int listenPort, final int targetPort) throws IOException {
+        this.name = name;
+        this.targetPort = targetPort;
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), listenPort));
+        this.acceptThread = new Thread(this::acceptLoop, "LinkProxy-" + name);
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    int getListenPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    synchronized Mode getMode() {
+        return mode;
+    }
+
+    synchronized void setMode(final Mode newMode) {
+        if (newMode == mode) {
+            return;
+        }
+        LOG.debug("Link {}: {} -> {}", name, mode, newMode);
+        mode = newMode;
+        if (newMode != Mode.DROP) {
+            // Connections that were partitioned or dropped have lost traffic and cannot be resumed
+            closeConnections();
+        }
+    }
+
+    void setDelay(final long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    long getDelay() {
+        return delayMillis;
+    }
+
+    void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (final IOException e) {
+            LOG.debug("Error while closing link {}", name, e);
+        }
+        synchronized (this) {
+            closeConnections();
+        }
+    }
+
+    // Requires this to be locked
+    private void closeConnections() {
+        final List<Connection> toClose = new ArrayList<>(connections);
+        connections.clear();
+        for (final var connection : toClose) {
+            connection.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            final Socket downstream;
+            try {
+                downstream = serverSocket.accept();
+            } catch (final IOException e) {
+                if (!closed) {
+                    LOG.warn("Link {} stopped accepting connections", name, e);
+                }
+                return;
+            }
+            synchronized (this) {
+                if (mode == Mode.PARTITION) {
+                    closeQuietly(downstream);
+                    continue;
+                }
+            }
+            // Connecting to the target may block, so we do it off the accept thread
+            final Thread connectThread = new Thread(() -> connect(downstream), "LinkProxy-" + name + "-connect");
+            connectThread.setDaemon(true);
+            connectThread.start();
+        }
+    }
+
+    private void connect(final Socket downstream) {
+        final Socket upstream;
+        try {
+            upstream = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+        } catch (final IOException e) {
+            // The target is down, which the connecting peer should see as a refused connection
+            closeQuietly(downstream);
+            return;
+        }
+        final Connection connection = new Connection(downstream, upstream);
+        synchronized (this) {
+            if (closed || mode == Mode.PARTITION) {
+                connection.close();
+                return;
+            }
+            connections.add(connection);
+        }
+        connection.start();
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        try {
+            socket.close();
+        } catch (final IOException ignored) {
+        }
+    }
+
+    /***
+     * A proxied connection. Each direction has a reader that timestamps the chunks it reads, and a writer
+     * that forwards them once their delay has passed, which preserves their order.
+     */
+    private class Connection {
+
+        private final Socket downstream;
+        private final Socket upstream;
+
+        Connection(final Socket downstream, final Socket upstream) {
+            this.downstream = downstream;
+            this.upstream = upstream;
+        }
+
+        void start() {
+            forward(downstream, upstream, "out");
+            forward(upstream, downstream, "in");
+        }
+
+        private void forward(final Socket from, final Socket to, final String direction) {
+            final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+            final Thread reader = new Thread(() -> {
+                try {
+                    final InputStream in = from.getInputStream();
+                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) >= 0) {
+                        if (getMode() == Mode.CONNECTED) {
+                            chunks.put(new Chunk(System.currentTimeMillis() + delayMillis,
+                                    Arrays.copyOf(buffer, read)));
+                        }
+                    }
+                } catch (final IOException | InterruptedException ignored) {
+                }
+                chunks.offer(Chunk.END);
+            }, "LinkProxy-" + name + "-" + direction + "-reader");
+            final Thread writer = new Thread(() -> {
+                try {
+                    final OutputStream out = to.getOutputStream();
+                    while (true) {
+                        final Chunk chunk = chunks.take();
+                        if (chunk == Chunk.END) {
+                            break;
+                        }
+                        final long wait = chunk.due - System.currentTimeMillis();
+                        if (wait > 0) {
+                            Thread.sleep(wait);
+                        }
+                        out.write(chunk.data);
+                        out.flush();
+                    }
+                } catch (final IOException | InterruptedException ignored) {
+                }
+                close();
+            }, "LinkProxy-" + name + "-" + direction + "-writer");
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        void close() {
+            closeQuietly(downstream);
+            closeQuietly(upstream);
+            synchronized (LinkProxy.this) {
+                connections.remove(this);
+            }
+        }
+    }
+
+    private static class Chunk {
+
+        private static final Chunk END = new Chunk(0, new byte[0]);
+
+        private final long due;
+        private final byte[] data;
+
+        Chunk(final long due, final byte[] data) {
+            this.due = due;
+            this.data = data;
+        }
+    }
+}
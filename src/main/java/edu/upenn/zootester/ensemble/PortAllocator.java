@@ -0,0 +1,97 @@
+package edu.upenn.zootester.ensemble;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/***
+ * Leases ports to ensembles. Before a port is handed out, we check that it can be bound, so ports that are
+ * taken by other processes are skipped. Released ports are handed out again, oldest first, which gives
+ * the sockets that were bound to them the most time to go away. All methods are thread-safe.
+ */
+public class PortAllocator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PortAllocator.class);
+
+    private static final int MAX_PORT = 65535;
+
+    private final Deque<Integer> releasedPorts = new ArrayDeque<>();
+    private final Set<Integer> leasedPorts = new HashSet<>();
+    private int nextPort;
+
+    public PortAllocator(final int basePort) {
+        this.nextPort = basePort;
+    }
+
+    /***
+     * Sets the port from which fresh ports are allocated. Ports that are currently leased are not affected,
+     * and are never handed out twice.
+     */
+    public synchronized void setBasePort(final int basePort) {
+        nextPort = basePort;
+        releasedPorts.clear();
+    }
+
+    public synchronized List<Integer> lease(final int count) throws IOException {
+        final List<Integer> ports = new ArrayList<>(count);
+
+        // First reuse released ports. Those that can't be bound yet are tried again in a later lease.
+        final int totalReleased = releasedPorts.size();
+        for (int i = 0; i < totalReleased && ports.size() < count; ++i) {
+            final int port = releasedPorts.removeFirst();
+            if (isBindable(port)) {
+                ports.add(port);
+            } else {
+                releasedPorts.addLast(port);
+            }
+        }
+
+        while (ports.size() < count) {
+            if (nextPort > MAX_PORT) {
+                releasedPorts.addAll(ports);
+                throw new IOException("Ran out of ports while leasing " + count + " ports");
+            }
+            final int port = nextPort++;
+            if (leasedPorts.contains(port) || releasedPorts.contains(port)) {
+                continue;
+            }
+            if (isBindable(port)) {
+                ports.add(port);
+            } else {
+                LOG.debug("Skipping port {} because it cannot be bound", port);
+            }
+        }
+
+        leasedPorts.addAll(ports);
+        return ports;
+    }
+
+    public synchronized void release(final Collection<Integer> ports) {
+        for (final int port : ports) {
+            if (leasedPorts.remove(port)) {
+                releasedPorts.addLast(port);
+            }
+        }
+    }
+
+    private static boolean isBindable(final int port) {
+        // The client port is bound to the wildcard address, which is the strictest check
+        try (final ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(port));
+            return true;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+}
@@ -1,20 +1,78 @@
 package edu.upenn.zootester.ensemble;
 
 import edu.upenn.zootester.util.Assert;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
 import org.apache.zookeeper.server.admin.AdminServer;
 import org.apache.zookeeper.server.quorum.Election;
+import org.apache.zookeeper.server.quorum.FastLeaderElection;
+import org.apache.zookeeper.server.quorum.Follower;
+import org.apache.zookeeper.server.quorum.Leader;
+import org.apache.zookeeper.server.quorum.LearnerHandler;
+import org.apache.zookeeper.server.quorum.QuorumPeer;
+import org.apache.zookeeper.server.quorum.QuorumPeer.ServerState;
 import org.apache.zookeeper.server.quorum.QuorumPeerConfig;
 import org.apache.zookeeper.server.quorum.QuorumPeerMain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.security.sasl.SaslException;
 import java.io.IOException;
+import java.net.Socket;
 import java.nio.file.Path;
 
 public class QuorumPeerMainWithShutdown extends QuorumPeerMain {
 
     private static final Logger LOG = LoggerFactory.getLogger(QuorumPeerMainWithShutdown.class);
 
+    private final Runnable stateListener;
+
+    // Mirrors of the peer's state, which we keep so that the state can be read without taking the peer's lock
+    private volatile ServerState peerState = ServerState.LOOKING;
+    private volatile boolean serving = false;
+    private volatile boolean crashed = false;
+
+    // The peer's client connection factory, which QuorumPeer doesn't expose
+    private volatile ServerCnxnFactory cnxnFactory;
+
+    /***
+     * @param stateListener Called whenever the peer changes its state, or starts or stops serving requests.
+     *                      It is called from the peer's threads, possibly while they hold the peer's lock.
+     */
+    public QuorumPeerMainWithShutdown(final Runnable stateListener) {
+        this.stateListener = stateListener;
+    }
+
+    public QuorumPeerMainWithShutdown() {
+        this(() -> {
+        });
+    }
+
+    @Override
+    protected QuorumPeer getQuorumPeer() throws SaslException {
+        return new QuorumPeer() {
+            @Override
+            public synchronized void setPeerState(final ServerState newState) {
+                super.setPeerState(newState);
+                peerState = newState;
+                stateListener.run();
+            }
+
+            @Override
+            public void setZooKeeperServer(final ZooKeeperServer zks) {
+                super.setZooKeeperServer(zks);
+                serving = zks != null && !crashed;
+                stateListener.run();
+            }
+
+            @Override
+            public void setCnxnFactory(final ServerCnxnFactory factory) {
+                super.setCnxnFactory(factory);
+                cnxnFactory = factory;
+            }
+        };
+    }
+
     /***
      * This method is basically copied over from org.apache.zookeeper.test.QuorumBase.shutdown().
      * It shuts down quorumPeer; in particular it joins its thread and waits or it to exit.
@@ -35,20 +93,87 @@ public class QuorumPeerMainWithShutdown extends QuorumPeerMain {
                     LOG.debug("No election available to shutdown {}", quorumPeerName);
                 }
 
-                LOG.debug("Waiting for {} to exit thread", quorumPeerName);
-                final long readTimeout = quorumPeer.getTickTime() * quorumPeer.getInitLimit();
-                final long connectTimeout = quorumPeer.getTickTime() * quorumPeer.getSyncLimit();
-                final long maxTimeout = Math.max(Math.max(readTimeout, connectTimeout), ZKHelper.CONNECTION_TIMEOUT);
-                quorumPeer.join(maxTimeout * 2);
-                if (quorumPeer.isAlive()) {
-                    Assert.fail("QP failed to shutdown in " + (maxTimeout * 2) + " milliseconds: " + quorumPeerName);
-                }
+                awaitExit(quorumPeerName);
             } catch (final InterruptedException e) {
                 LOG.debug("QP interrupted: {}\n{}", quorumPeerName, e.getMessage());
             }
         }
     }
 
+    private void awaitExit(final String quorumPeerName) throws InterruptedException {
+        LOG.debug("Waiting for {} to exit thread", quorumPeerName);
+        final long readTimeout = quorumPeer.getTickTime() * quorumPeer.getInitLimit();
+        final long connectTimeout = quorumPeer.getTickTime() * quorumPeer.getSyncLimit();
+        final long maxTimeout = Math.max(Math.max(readTimeout, connectTimeout), ZKHelper.getTimingProfile().getSessionTimeout());
+        quorumPeer.join(maxTimeout * 2);
+        if (quorumPeer.isAlive()) {
+            Assert.fail("QP failed to shutdown in " + (maxTimeout * 2) + " milliseconds: " + quorumPeerName);
+        }
+    }
+
+    /***
+     * Crashes the peer abruptly, without going through QuorumPeer.shutdown(): its client connections, its
+     * connections to the leader or to its learners, and its election connections are closed without flushing
+     * anything, and its threads are abandoned. The abandoned threads still hold the data directory and the
+     * ports, including the election listener, so the peer cannot be restarted until {@link #reap()} has
+     * released them.
+     */
+    public void crash() {
+        if (quorumPeer == null) {
+            return;
+        }
+        LOG.debug("Crashing quorum peer {}", quorumPeer.getName());
+        crashed = true;
+        serving = false;
+        stateListener.run();
+
+        // Nothing here waits for another thread, since that costs a scheduling round on a loaded machine
+        final ServerCnxnFactory factory = cnxnFactory;
+        if (factory != null) {
+            // Without a server, the factory also refuses new connections until the reaper shuts it down
+            factory.setZooKeeperServer(null);
+            factory.closeAll();
+        }
+        final Follower follower = quorumPeer.follower;
+        if (follower != null) {
+            closeQuietly(follower.getSocket());
+        }
+        final Leader leader = quorumPeer.leader;
+        if (leader != null) {
+            for (final LearnerHandler learnerHandler : leader.getLearners()) {
+                closeQuietly(learnerHandler.getSocket());
+            }
+        }
+        final Election election = quorumPeer.getElectionAlg();
+        if (election instanceof FastLeaderElection) {
+            // Drops the election connections, the listener is shut down by the reaper
+            ((FastLeaderElection) election).getCnxManager().softHalt();
+        }
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (final IOException e) {
+            LOG.debug("Failed to close socket {}", socket, e);
+        }
+    }
+
+    /***
+     * Releases the resources of a crashed peer and waits for its threads to exit. Since the peer is cut off
+     * already, the shutdown only affects the peer's own data directory, as if the crash had happened after
+     * the writes that were in flight.
+     */
+    public void reap() throws InterruptedException {
+        if (quorumPeer != null) {
+            quorumPeer.shutdown();
+            awaitExit(quorumPeer.getName());
+        }
+    }
+
     public void initializeAndRun(final String[] args) throws IOException, QuorumPeerConfig.ConfigException, AdminServer.AdminServerException {
 //    public void initializeAndRun(final String[] args) throws IOException, QuorumPeerConfig.ConfigException {
         super.initializeAndRun(args);
@@ -59,6 +184,20 @@ public class QuorumPeerMainWithShutdown extends QuorumPeerMain {
     }
 
     public boolean isLeader() {
-        return quorumPeer.leader != null;
+        return !crashed && quorumPeer.leader != null;
+    }
+
+    /***
+     * @return Whether the peer serves requests, as a leader or as a follower that has synced with its leader
+     */
+    public boolean isServing() {
+        return serving;
+    }
+
+    /***
+     * @return Whether the peer has been elected, has established its quorum and is serving requests
+     */
+    public boolean isEstablishedLeader() {
+        return peerState == ServerState.LEADING && serving;
     }
 }
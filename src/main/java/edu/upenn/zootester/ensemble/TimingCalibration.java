@@ -0,0 +1,94 @@
+package edu.upenn.zootester.ensemble;
+
+import edu.upenn.zootester.util.AssertionFailureError;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooDefs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/***
+ * Finds the smallest tick time at which an ensemble runs stably on the current machine. Starting from the
+ * fast profile's tick time, we keep halving the tick time for as long as a scratch ensemble survives a few
+ * trial rounds of starting up, serving a write, and re-electing after its leader is stopped. The result
+ * is the smallest stable tick time multiplied by a safety factor.
+ */
+public class TimingCalibration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimingCalibration.class);
+
+    private static final int TRIALS = 3;
+    private static final int MIN_TICK_TIME = 10;
+    private static final int SAFETY_FACTOR = 2;
+
+    private final ZKTimingProfile baseProfile;
+    private final int totalServers;
+
+    public TimingCalibration(final ZKTimingProfile baseProfile, final int totalServers) {
+        this.baseProfile = baseProfile;
+        this.totalServers = totalServers;
+    }
+
+    public TimingCalibration(final int totalServers) {
+        this(ZKTimingProfile.FAST, totalServers);
+    }
+
+    /***
+     * Runs the calibration. It uses (and restores) the current profile from {@link ZKHelper}.
+     *
+     * @return The calibrated profile
+     */
+    public ZKTimingProfile calibrate() {
+        final ZKTimingProfile previousProfile = ZKHelper.getTimingProfile();
+        int stableTickTime = -1;
+        try {
+            for (int tickTime = baseProfile.getTickTime(); tickTime >= MIN_TICK_TIME; tickTime /= 2) {
+                final ZKTimingProfile candidate = baseProfile.withTickTime("candidate", tickTime);
+                ZKHelper.setTimingProfile(candidate);
+                if (!isStable(candidate)) {
+                    break;
+                }
+                stableTickTime = tickTime;
+            }
+        } finally {
+            ZKHelper.setTimingProfile(previousProfile);
+        }
+
+        if (stableTickTime < 0) {
+            LOG.warn("Even the tick time of {} was not stable. Falling back to the default profile", baseProfile);
+            return ZKTimingProfile.DEFAULT;
+        }
+        final ZKTimingProfile calibrated = baseProfile.withTickTime("calibrated", stableTickTime * SAFETY_FACTOR);
+        LOG.info("Calibrated timing profile: {}", calibrated);
+        return calibrated;
+    }
+
+    private boolean isStable(final ZKTimingProfile candidate) {
+        LOG.info("Trying timing profile {}", candidate);
+        final ZKEnsemble zkEnsemble = new ZKEnsemble(totalServers);
+        try (final AutoCloseable tearDown = zkEnsemble::tearDown) {
+            zkEnsemble.init();
+            for (int i = 0; i < TRIALS; ++i) {
+                final long start = System.currentTimeMillis();
+                try (final AutoCloseable cleanUp = zkEnsemble::stopEnsemble) {
+                    zkEnsemble.startEnsemble();
+                    final int leader = zkEnsemble.getLeader();
+                    zkEnsemble.handleRequest(leader, (zk, serverId) ->
+                            zk.create("/calibration", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+
+                    // Force a re-election among the remaining servers, and bring the old leader back
+                    zkEnsemble.stopServers(List.of(leader));
+                    zkEnsemble.startServers(List.of(leader));
+                    zkEnsemble.handleRequest(leader, (zk, serverId) -> zk.delete("/calibration", -1));
+                }
+                LOG.info("Trial {} with tick time {} took {} ms",
+                        i, candidate.getTickTime(), System.currentTimeMillis() - start);
+            }
+            return true;
+        } catch (final Exception | AssertionFailureError e) {
+            LOG.warn("Timing profile {} is not stable", candidate, e);
+            return false;
+        }
+    }
+}
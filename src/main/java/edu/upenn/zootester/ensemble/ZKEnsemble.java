@@ -10,22 +10,69 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-public class ZKEnsemble implements Watcher {
+public class ZKEnsemble {
 
     private static final Logger LOG = LoggerFactory.getLogger(ZKEnsemble.class);
 
+    // We wait for clients to transition into a state for at least DEFAULT_WAIT_TIMEOUT, the fixed timeout we
+    // used to have, and for at least the time a follower may take to sync with a new leader. Once slower
+    // transitions have been seen, we wait for WAIT_TIMEOUT_FACTOR times the slowest of them, up to
+    // MAX_WAIT_TIMEOUT. The timeout never drops below the floor, as a fast history says nothing about the
+    // next election, and timing out early causes spurious failures.
+    private static final long DEFAULT_WAIT_TIMEOUT = 10_000;
+    private static final long MAX_WAIT_TIMEOUT = 30_000;
+    private static final long WAIT_TIMEOUT_FACTOR = 4;
+
+    private static final String INITIAL_CHECKPOINT = "init";
+
     private final int totalNodes;
+    private final boolean proxied;
+    private final List<Integer> leasedPorts = new ArrayList<>();
     private final List<Integer> clientPorts = new ArrayList<>();
     private final List<ZKNodeHandler> servers = new ArrayList<>();
     private final List<ZooKeeper> clients = new ArrayList<>();
+    private final List<ClientWatcher> clientWatchers = new ArrayList<>();
     private final List<Integer> allIds;
 
+    // If the ensemble is proxied, each pair of servers talks through the proxies of its link, which carry
+    // both the quorum and the election connections in both directions
+    private final Map<Set<Integer>, List<LinkProxy>> links = new HashMap<>();
+
+    // Runs operations on several servers or clients at once, so that bulk operations take as long
+    // as the slowest server instead of the sum of all of them
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guards the client states tracked by clientWatchers. Waiters are notified on every state change.
+    private final Object clientStateMonitor = new Object();
+    private final Map<States, Long> slowestWait = new EnumMap<>(States.class);
+
+    // Guards the leader tracking below. Waiters are notified whenever a server changes its state.
+    private final Object leaderMonitor = new Object();
+    private int establishedLeader = -1;
+    private final List<Integer> leaderHistory = new ArrayList<>();
+    private final Map<String, List<Integer>> checkpointedLeaderHistories = new HashMap<>();
+    private long leaderlessSince = System.currentTimeMillis();
+    private long lastElectionMillis = -1;
+
     // Given i, clientForServer.get(i) is the ID of the client that talks to server i.
     // Conversely, serverForClient.get(i) is the ID of the server that client i talks to.
     // During the execution, a particular client may no longer be able to connect to a server,
@@ -34,50 +81,207 @@ public class ZKEnsemble implements Watcher {
     private final List<Integer> serverForClient = new ArrayList<>();
 
     public ZKEnsemble(final int totalNodes) {
+        this(totalNodes, false);
+    }
+
+    /***
+     * @param proxied Whether the servers talk to each other through proxies, which allows partitioning,
+     *                dropping and delaying the traffic between pairs of servers
+     */
+    public ZKEnsemble(final int totalNodes, final boolean proxied) {
         this.totalNodes = totalNodes;
-        this.allIds = IntStream.range(0, totalNodes).boxed().collect(Collectors.toList());
+        this.proxied = proxied;
+        this.allIds = IntStream.range(0, totalNodes).boxed().collect(Collectors.toUnmodifiableList());
     }
 
     public void init() throws IOException {
-        final StringBuilder sb = new StringBuilder();
+        // Each server has a client, a quorum and an election port. When proxied, each server additionally
+        // reaches every other server through a quorum and an election proxy port.
+        final int proxyPorts = proxied ? 2 * totalNodes * (totalNodes - 1) : 0;
+        leasedPorts.addAll(ZKHelper.leasePorts(3 * totalNodes + proxyPorts));
         for (int i = 0; i < totalNodes; ++i) {
-            clientPorts.add(ZKHelper.getUniquePort());
-            sb.append("server.").append(i).append("=127.0.0.1:").append(ZKHelper.getUniquePort())
-                    .append(':').append(ZKHelper.getUniquePort()).append('\n');
+            clientPorts.add(leasedPorts.get(3 * i));
         }
-        final String quorumCfgSection = sb.toString();
 
+        int nextProxyPort = 3 * totalNodes;
         for (int i = 0; i < totalNodes; ++i) {
-            final ZKNodeHandler server = new ZKNodeHandler(i, clientPorts.get(i), quorumCfgSection);
+            final StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < totalNodes; ++j) {
+                int quorumPort = leasedPorts.get(3 * j + 1);
+                int electionPort = leasedPorts.get(3 * j + 2);
+                if (proxied && i != j) {
+                    final List<LinkProxy> link = links.computeIfAbsent(Set.of(i, j), ignored -> new ArrayList<>());
+                    final LinkProxy quorumProxy = new LinkProxy(i + "->" + j + "/quorum",
+                            leasedPorts.get(nextProxyPort++), quorumPort);
+                    final LinkProxy electionProxy = new LinkProxy(i + "->" + j + "/election",
+                            leasedPorts.get(nextProxyPort++), electionPort);
+                    link.add(quorumProxy);
+                    link.add(electionProxy);
+                    quorumPort = quorumProxy.getListenPort();
+                    electionPort = electionProxy.getListenPort();
+                }
+                sb.append("server.").append(j).append("=127.0.0.1:").append(quorumPort)
+                        .append(':').append(electionPort).append('\n');
+            }
+            final ZKNodeHandler server = new ZKNodeHandler(i, clientPorts.get(i), sb.toString(), this::updateLeader);
             servers.add(server);
         }
     }
 
     public void startEnsemble() throws IOException, InterruptedException {
+        resetLeaderHistory(List.of());
+        forEachServer(allIds, this::startSingle);
+        openClients();
+        waitForAllClients(ZooKeeper.States.CONNECTED);
+    }
+
+    private void openClients() throws IOException {
         for (int i = 0; i < totalNodes; ++i) {
-            startSingle(i);
+            final ClientWatcher watcher = new ClientWatcher();
+            synchronized (clientStateMonitor) {
+                clientWatchers.add(watcher);
+            }
             final ZooKeeper client = new ZooKeeper("127.0.0.1:" + clientPorts.get(i),
-                    ZKHelper.CONNECTION_TIMEOUT, this);
+                    ZKHelper.getTimingProfile().getSessionTimeout(), watcher);
             clients.add(client);
 
             // Initially client i speaks to server i
             clientForServer.add(i);
             serverForClient.add(i);
         }
-        waitForAllClients(ZooKeeper.States.CONNECTED);
+    }
+
+    /***
+     * Closes the clients gracefully, which also closes their sessions at the servers. This blocks until the
+     * servers acknowledge the close, or until the requests time out if the servers are down.
+     */
+    private void closeClients() throws InterruptedException, IOException {
+        // Closing a client whose server is down blocks until the close request times out, so we close
+        // all clients at once
+        forEachServer(IntStream.range(0, clients.size()).boxed().collect(Collectors.toList()),
+                clientId -> clients.get(clientId).close());
+        forgetClients();
+    }
+
+    /***
+     * Abandons the clients without closing their sessions. Each client stops its threads on its own right
+     * away, as if its session had expired. This is only safe when the servers' state is about to be wiped or
+     * replaced, since the sessions would otherwise linger until they time out.
+     */
+    private void discardClients() {
+        for (final var client : clients) {
+            client.getTestable().injectSessionExpiration();
+        }
+        forgetClients();
+    }
+
+    private void forgetClients() {
+        clients.clear();
+        synchronized (clientStateMonitor) {
+            clientWatchers.clear();
+        }
+        clientForServer.clear();
+        serverForClient.clear();
+    }
+
+    /***
+     * Replaces the clients with fresh ones, each of which talks to the server with the same ID. The old
+     * clients are discarded without closing their sessions, so this should only be called when the servers
+     * are stopped and their state is about to be replaced.
+     * <p>
+     * ZooKeeper binds a session to the transactions its client has seen, so a client cannot be carried over
+     * into a state that the servers restored from an earlier point: the servers would refuse its connection.
+     */
+    public void resetClients() throws IOException {
+        discardClients();
+        openClients();
+    }
+
+    public boolean hasCheckpoint() {
+        return servers.stream().allMatch(server -> server.hasCheckpoint(INITIAL_CHECKPOINT));
+    }
+
+    /***
+     * Bootstraps the ensemble by starting all servers and applying initRequest at the leader, and then
+     * saves the state of all servers so that subsequent executions can start from it using
+     * {@link #restoreEnsemble()}. At the end, all servers are stopped and there are no clients.
+     *
+     * @param initRequest The request that brings the ensemble into its initial state
+     */
+    public void checkpoint(final ZKRequest initRequest) throws IOException, InterruptedException, KeeperException {
+        LOG.info("Creating a checkpoint of the initial ensemble state");
+        startEnsemble();
+        handleRequest(getLeader(), initRequest);
+
+        // We close the clients while the servers are still running, so that their sessions are
+        // properly closed and don't linger in the checkpoint
+        closeClients();
+        forEachServer(allIds, serverId -> {
+            servers.get(serverId).shutdown();
+            servers.get(serverId).checkpoint(INITIAL_CHECKPOINT);
+        });
+    }
+
+    /***
+     * Restores the data of all servers from the checkpoint and opens the clients. The servers are left
+     * stopped, which corresponds to the state right after {@code startEnsemble()}, applying the initial
+     * request, and {@code stopAllServers()}.
+     */
+    public void restoreEnsemble() throws IOException, InterruptedException {
+        forEachServer(allIds, serverId -> servers.get(serverId).restore(INITIAL_CHECKPOINT));
+        resetLeaderHistory(List.of());
+        openClients();
+    }
+
+    /***
+     * Saves the state of all servers under the given name. All servers should be stopped, so that the
+     * saved state fully describes the system.
+     */
+    public void saveCheckpoint(final String name) throws IOException, InterruptedException {
+        forEachServer(allIds, serverId -> servers.get(serverId).checkpoint(name));
+        synchronized (leaderMonitor) {
+            checkpointedLeaderHistories.put(name, new ArrayList<>(leaderHistory));
+        }
+    }
+
+    /***
+     * Brings all servers back into the state saved with {@link #saveCheckpoint(String)}. All servers should
+     * be stopped. The clients are replaced by fresh ones, because the old clients may have seen transactions
+     * that are not part of the restored state, in which case the servers would refuse their connections.
+     */
+    public void restoreCheckpoint(final String name) throws IOException, InterruptedException {
+        LOG.info("Restoring checkpoint {}", name);
+        forEachServer(allIds, serverId -> servers.get(serverId).restore(name));
+        synchronized (leaderMonitor) {
+            resetLeaderHistory(checkpointedLeaderHistories.getOrDefault(name, List.of()));
+        }
+        resetClients();
+    }
+
+    public void dropCheckpoint(final String name) throws IOException {
+        synchronized (leaderMonitor) {
+            checkpointedLeaderHistories.remove(name);
+        }
+        for (final var server : servers) {
+            server.dropCheckpoint(name);
+        }
     }
 
     public void startServers(final List<Integer> serverIds) throws InterruptedException, IOException {
         LOG.info("Starting servers: {}", serverIds);
-        for (final int i : serverIds) {
-            startSingle(i);
-        }
+        forEachServer(serverIds, this::startSingle);
         waitForClients(States.CONNECTED, serverIds);
     }
 
-    public void startSingle(final int serverId) {
+    public void startSingle(final int serverId) throws InterruptedException {
         final ZKNodeHandler server = servers.get(serverId);
         if (!server.isRunning()) {
+            synchronized (leaderMonitor) {
+                if (establishedLeader < 0) {
+                    // Without a leader, an election may start with this server
+                    leaderlessSince = System.currentTimeMillis();
+                }
+            }
             server.start();
         }
     }
@@ -86,10 +290,32 @@ public class ZKEnsemble implements Watcher {
         startServers(allIds);
     }
 
+    public int getTotalNodes() {
+        return totalNodes;
+    }
+
+    /***
+     * @return The number of servers in a majority quorum
+     */
+    public int getQuorumSize() {
+        return totalNodes / 2 + 1;
+    }
+
+    public List<Integer> getAllIds() {
+        return allIds;
+    }
+
     public boolean isRunning(final int serverId) {
         return servers.get(serverId).isRunning();
     }
 
+    /***
+     * @return Whether the server serves requests, as a leader or as a follower that has synced with its leader
+     */
+    public boolean isServing(final int serverId) {
+        return servers.get(serverId).isServing();
+    }
+
     public int getLeader() {
         return IntStream.range(0, servers.size())
                 .filter(i -> servers.get(i).isLeader())
@@ -97,29 +323,135 @@ public class ZKEnsemble implements Watcher {
                 .orElseThrow();
     }
 
+    /***
+     * Waits until some server has been elected leader and has established its quorum, or until the
+     * timeout expires. Waiting threads are woken up by the servers' state transitions.
+     *
+     * @return The ID of the leader, or -1 if no leader was established in time
+     */
+    public int waitForLeader(final long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (leaderMonitor) {
+            long remaining = timeoutMillis;
+            while (establishedLeader < 0 && remaining > 0) {
+                leaderMonitor.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return establishedLeader;
+        }
+    }
+
+    /***
+     * Waits until a leader has been established, like {@link #waitForLeader(long)}, and checks whether it is
+     * the given server. This returns as soon as any leader is established, so that we don't wait for the
+     * timeout when another server has won the election.
+     */
+    public boolean waitForLeader(final int serverId, final long timeoutMillis) throws InterruptedException {
+        return waitForLeader(timeoutMillis) == serverId;
+    }
+
+    /***
+     * @return How long the last election took, in milliseconds, or -1 if no leader has been established yet.
+     * The election is measured from the moment the previous leader was lost, or a server was started while
+     * there was no leader, until the new leader established its quorum.
+     */
+    public long getLastElectionMillis() {
+        synchronized (leaderMonitor) {
+            return lastElectionMillis;
+        }
+    }
+
+    /***
+     * @return The IDs of the leaders established since the ensemble was started or restored, in order
+     */
+    public List<Integer> getLeaderHistory() {
+        synchronized (leaderMonitor) {
+            return new ArrayList<>(leaderHistory);
+        }
+    }
+
+    /***
+     * @return Whether the ensemble has settled, so that it won't change its state unless we start or stop
+     * servers. That's the case if a quorum of servers is running and all of them serve requests under an
+     * established leader, or if too few servers are running for a quorum and none of them serves requests.
+     */
+    public boolean isQuiescent() {
+        final List<ZKNodeHandler> running = servers.stream()
+                .filter(ZKNodeHandler::isRunning)
+                .collect(Collectors.toList());
+        if (running.size() < getQuorumSize()) {
+            return running.stream().noneMatch(ZKNodeHandler::isServing);
+        }
+        synchronized (leaderMonitor) {
+            if (establishedLeader < 0) {
+                return false;
+            }
+        }
+        return running.stream().allMatch(ZKNodeHandler::isServing);
+    }
+
+    private void updateLeader() {
+        synchronized (leaderMonitor) {
+            final int leader = IntStream.range(0, servers.size())
+                    .filter(i -> servers.get(i).isEstablishedLeader())
+                    .findFirst()
+                    .orElse(-1);
+            if (leader == establishedLeader) {
+                return;
+            }
+            final long now = System.currentTimeMillis();
+            if (leader >= 0) {
+                lastElectionMillis = establishedLeader < 0 ? now - leaderlessSince : 0;
+                leaderHistory.add(leader);
+                LOG.info("Server {} established its leadership after an election of {} ms", leader, lastElectionMillis);
+            } else {
+                leaderlessSince = now;
+            }
+            establishedLeader = leader;
+            leaderMonitor.notifyAll();
+        }
+    }
+
+    private void resetLeaderHistory(final List<Integer> history) {
+        synchronized (leaderMonitor) {
+            leaderHistory.clear();
+            leaderHistory.addAll(history);
+        }
+    }
+
     public void stopServers(final List<Integer> serverIds) throws InterruptedException, IOException {
         LOG.info("Stopping servers: {}", serverIds);
-        for (final int i : serverIds) {
-            stopSingle(i);
-        }
+        forEachServer(serverIds, this::stopSingle);
         waitForClients(States.CONNECTING, serverIds);
     }
 
     public void stopSingle(final int serverId) throws InterruptedException {
         servers.get(serverId).shutdown();
+        updateLeader();
+    }
+
+    public void crashSingle(final int serverId) throws InterruptedException {
+        servers.get(serverId).crash();
+        updateLeader();
     }
 
     /***
      * Unlike stopNodes(), this method does not wait for the ZooKeeper client to
-     * detect that the servers have been stopped.
+     * detect that the servers have been stopped. The servers are crashed rather than shut down gracefully,
+     * so their threads are left to exit in the background.
      *
      * @param serverIds
      * @throws InterruptedException
      */
-    public void crashServers(final List<Integer> serverIds) throws InterruptedException {
+    public void crashServers(final List<Integer> serverIds) throws InterruptedException, IOException {
         LOG.info("Crashing servers: {}", serverIds);
-        for (final int i : serverIds) {
-            stopSingle(i);
+        forEachServer(serverIds, this::crashSingle);
+        // The clients will eventually notice the disconnection, but we don't want a subsequent wait
+        // for CONNECTED to succeed based on a stale state in the meantime.
+        synchronized (clientStateMonitor) {
+            for (final int i : serverIds) {
+                clientWatchers.get(clientForServer.get(i)).state = States.CONNECTING;
+            }
         }
     }
 
@@ -127,12 +459,57 @@ public class ZKEnsemble implements Watcher {
         stopServers(allIds);
     }
 
+    /***
+     * Runs the task for each of the given IDs concurrently and returns once all of them have finished.
+     * If any task fails, the first failure is rethrown after the remaining tasks have finished.
+     */
+    private void forEachServer(final List<Integer> ids, final ServerTask task) throws InterruptedException, IOException {
+        if (ids.size() == 1) {
+            task.run(ids.get(0));
+            return;
+        }
+        final List<Future<?>> futures = new ArrayList<>();
+        for (final int id : ids) {
+            futures.add(executor.submit(() -> {
+                task.run(id);
+                return null;
+            }));
+        }
+        Throwable failure = null;
+        for (final var future : futures) {
+            try {
+                future.get();
+            } catch (final ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof InterruptedException) {
+            throw (InterruptedException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ServerTask {
+        void run(int id) throws InterruptedException, IOException;
+    }
+
     private void waitForClients(final States state, final List<Integer> serverIds) throws InterruptedException, IOException {
         List<Integer> unmatchedServerIds = waitFor(state, serverIds);
         if (unmatchedServerIds.isEmpty()) {
             return;
         } else if (state.equals(States.CONNECTING)) {
-            LOG.error("After waiting for 10s, not all clients transitioned to CONNECTING state.");
+            LOG.error("After waiting for {} ms, not all clients transitioned to CONNECTING state.",
+                    getWaitTimeout(state));
             throw new RuntimeException("Waited for too long in waitForClients");
         }
 
@@ -147,6 +524,7 @@ public class ZKEnsemble implements Watcher {
             LOG.info("Servers whose clients couldn't connect to them: {}. Corresponding client states: {}",
                     unmatchedServerIds, clientStates);
             unmatchedServerIds.forEach(serverId -> canTalkTo[serverId][clientForServer.get(serverId)] = false);
+            final List<Integer> previousServerForClient = new ArrayList<>(serverForClient);
             if (!reassignClients(canTalkTo, unmatchedServerIds)) {
                 final StringBuilder sb = new StringBuilder();
                 sb.append("Cannot reassign clients to servers. Final client-server conflicts:");
@@ -166,11 +544,98 @@ public class ZKEnsemble implements Watcher {
                         "so that all connections can be established");
             }
             LOG.info("Reassigned clients to servers. The assignment is: {}", clientForServer);
-            updateClientConnections();
+            updateClientConnections(previousServerForClient);
             unmatchedServerIds = waitFor(state, serverIds);
         }
     }
 
+    /***
+     * Reassigns the clients of the given servers to other servers, as if they couldn't connect to their
+     * servers, and waits for all clients to connect. Only meant for tests.
+     */
+    void forceReassignment(final List<Integer> serverIds) throws InterruptedException, IOException {
+        final boolean[][] canTalkTo = allCanTalkToAll(totalNodes);
+        serverIds.forEach(serverId -> canTalkTo[serverId][clientForServer.get(serverId)] = false);
+        final List<Integer> previousServerForClient = new ArrayList<>(serverForClient);
+        if (!reassignClients(canTalkTo, serverIds)) {
+            throw new IllegalArgumentException("The clients of servers " + serverIds + " cannot be reassigned");
+        }
+        LOG.info("Reassigned clients to servers. The assignment is: {}", clientForServer);
+        updateClientConnections(previousServerForClient);
+        waitForAllClients(States.CONNECTED);
+    }
+
+    /***
+     * Cuts the link between the two servers: their connections are reset and new ones are refused until
+     * the link is healed.
+     */
+    public void partitionLink(final int serverA, final int serverB) {
+        LOG.info("Partitioning link {} <-> {}", serverA, serverB);
+        setLinkMode(serverA, serverB, LinkProxy.Mode.PARTITION);
+    }
+
+    /***
+     * Silently discards all traffic between the two servers while keeping their connections open, so they
+     * only notice the failure through their timeouts.
+     */
+    public void dropLink(final int serverA, final int serverB) {
+        LOG.info("Dropping traffic on link {} <-> {}", serverA, serverB);
+        setLinkMode(serverA, serverB, LinkProxy.Mode.DROP);
+    }
+
+    public void healLink(final int serverA, final int serverB) {
+        LOG.info("Healing link {} <-> {}", serverA, serverB);
+        setLinkMode(serverA, serverB, LinkProxy.Mode.CONNECTED);
+    }
+
+    /***
+     * Partitions the servers in the group from all other servers. Links within each side are not affected.
+     */
+    public void partition(final List<Integer> group) {
+        for (final int serverA : group) {
+            for (final int serverB : allIds) {
+                if (!group.contains(serverB)) {
+                    partitionLink(serverA, serverB);
+                }
+            }
+        }
+    }
+
+    /***
+     * Delays the traffic between the two servers by the given time in each direction.
+     */
+    public void setLinkDelay(final int serverA, final int serverB, final long delayMillis) {
+        LOG.info("Delaying link {} <-> {} by {} ms", serverA, serverB, delayMillis);
+        getLink(serverA, serverB).forEach(proxy -> proxy.setDelay(delayMillis));
+    }
+
+    /***
+     * Heals all links and removes all delays.
+     */
+    public void healAll() {
+        for (final var link : links.values()) {
+            for (final var proxy : link) {
+                proxy.setMode(LinkProxy.Mode.CONNECTED);
+                proxy.setDelay(0);
+            }
+        }
+    }
+
+    private void setLinkMode(final int serverA, final int serverB, final LinkProxy.Mode mode) {
+        getLink(serverA, serverB).forEach(proxy -> proxy.setMode(mode));
+    }
+
+    private List<LinkProxy> getLink(final int serverA, final int serverB) {
+        if (!proxied) {
+            throw new IllegalStateException("Links can only be controlled in a proxied ensemble");
+        }
+        final List<LinkProxy> link = links.get(Set.of(serverA, serverB));
+        if (link == null) {
+            throw new IllegalArgumentException("There is no link between " + serverA + " and " + serverB);
+        }
+        return link;
+    }
+
     private static boolean[][] allCanTalkToAll(final int totalNodes) {
         final boolean[][] canTalkTo = new boolean[totalNodes][totalNodes];
         for (int i = 0; i < totalNodes; i++) {
@@ -181,56 +646,92 @@ public class ZKEnsemble implements Watcher {
         return canTalkTo;
     }
 
+    /***
+     * Waits until the clients of all the given servers are in the given state, or until the wait times out.
+     * The waiting thread is woken up by the clients' connection events, so it returns as soon as the last
+     * client has transitioned.
+     *
+     * @return The IDs of the servers whose clients are not in the given state
+     */
     private List<Integer> waitFor(final States state, final List<Integer> serverIds) throws InterruptedException {
-        List<Integer> unmatchedServerIds = serverIds;
-        int iterations = 100;
-        while (!unmatchedServerIds.isEmpty() && iterations-- > 0) {
-            Thread.sleep(100);
-            unmatchedServerIds = serverIds.stream()
-                    .filter(serverId -> clients.get(clientForServer.get(serverId)).getState() != state)
-                    .collect(Collectors.toList());
+        final long timeout = getWaitTimeout(state);
+        final long start = System.currentTimeMillis();
+        final long deadline = start + timeout;
+        synchronized (clientStateMonitor) {
+            List<Integer> unmatchedServerIds = getUnmatchedServerIds(state, serverIds);
+            long remaining = timeout;
+            while (!unmatchedServerIds.isEmpty() && remaining > 0) {
+                clientStateMonitor.wait(remaining);
+                unmatchedServerIds = getUnmatchedServerIds(state, serverIds);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            if (unmatchedServerIds.isEmpty()) {
+                final long elapsed = System.currentTimeMillis() - start;
+                slowestWait.merge(state, elapsed, Math::max);
+            }
+            return unmatchedServerIds;
         }
-        return unmatchedServerIds;
     }
 
+    private List<Integer> getUnmatchedServerIds(final States state, final List<Integer> serverIds) {
+        return serverIds.stream()
+                .filter(serverId -> clientWatchers.get(clientForServer.get(serverId)).state != state)
+                .collect(Collectors.toList());
+    }
+
+    private long getWaitTimeout(final States state) {
+        final ZKTimingProfile timingProfile = ZKHelper.getTimingProfile();
+        final long floor = Math.max(DEFAULT_WAIT_TIMEOUT,
+                (long) timingProfile.getTickTime() * timingProfile.getInitLimit());
+        final Long slowest = slowestWait.get(state);
+        if (slowest == null) {
+            return floor;
+        }
+        return Math.max(floor, Math.min(MAX_WAIT_TIMEOUT, slowest * WAIT_TIMEOUT_FACTOR));
+    }
+
+    /***
+     * Reassigns clients so that every server has a client it can talk to, keeping the assignment of the
+     * other servers where possible.
+     *
+     * @return Whether such an assignment exists
+     */
     private boolean reassignClients(final boolean[][] canTalkTo, final List<Integer> serverIds) {
-        final Set<Integer> unmatchedServerIds = new HashSet<>(serverIds);
-        for (final int serverId : serverIds) {
-            if (!tryMatch(serverId, canTalkTo, unmatchedServerIds, new HashSet<>())) {
-                return false;
-            }
-            unmatchedServerIds.remove(serverId);
+        final int[] matchOfServer = new int[totalNodes];
+        for (int serverId = 0; serverId < totalNodes; ++serverId) {
+            matchOfServer[serverId] = serverIds.contains(serverId) ? -1 : clientForServer.get(serverId);
+        }
+        if (BipartiteMatcher.maximumMatching(canTalkTo, totalNodes, matchOfServer) < totalNodes) {
+            return false;
+        }
+        for (int serverId = 0; serverId < totalNodes; ++serverId) {
+            clientForServer.set(serverId, matchOfServer[serverId]);
+            serverForClient.set(matchOfServer[serverId], serverId);
         }
         return true;
     }
 
-    private void updateClientConnections() throws IOException {
-        for (final int clientId : allIds) {
+    /***
+     * Points the clients whose server changed to their new server. A client that moves keeps its CONNECTED
+     * state until its Disconnected event arrives, so we mark it as CONNECTING first, lest a subsequent wait
+     * for CONNECTED return while it is still reconnecting. The other clients are left alone: after an
+     * earlier move, updating the server list of a client may close its connection even if the list is
+     * unchanged.
+     */
+    private void updateClientConnections(final List<Integer> previousServerForClient) throws IOException {
+        final List<Integer> movedClientIds = allIds.stream()
+                .filter(clientId -> !serverForClient.get(clientId).equals(previousServerForClient.get(clientId)))
+                .collect(Collectors.toList());
+        synchronized (clientStateMonitor) {
+            movedClientIds.forEach(clientId -> clientWatchers.get(clientId).state = States.CONNECTING);
+        }
+        for (final int clientId : movedClientIds) {
             final int serverId = serverForClient.get(clientId);
             final ZooKeeper client = clients.get(clientId);
             client.updateServerList("127.0.0.1:" + clientPorts.get(serverId));
         }
     }
 
-    private boolean tryMatch(int serverId,
-                             final boolean[][] canTalkTo,
-                             final Set<Integer> unmatchedServerIds,
-                             final Set<Integer> visitedClientIds) {
-        for (int clientId = 0; clientId < totalNodes; ++clientId) {
-            if (canTalkTo[serverId][clientId] && !visitedClientIds.contains(clientId)) {
-                visitedClientIds.add(clientId);
-                final int otherServerId = serverForClient.get(clientId);
-                if (unmatchedServerIds.contains(otherServerId)
-                        || tryMatch(otherServerId, canTalkTo, unmatchedServerIds, visitedClientIds)) {
-                    clientForServer.set(serverId, clientId);
-                    serverForClient.set(clientId, serverId);
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
     private void waitForAllClients(final States state) throws InterruptedException, IOException {
         waitForClients(state, allIds);
     }
@@ -244,32 +745,90 @@ public class ZKEnsemble implements Watcher {
         request.apply(clients.get(clientId), serverId);
     }
 
+    /***
+     * Applies an asynchronous request and waits until its completion is done, but at most timeoutMillis. A
+     * request that doesn't complete in time is left outstanding, and its callbacks may still fire later.
+     *
+     * @return Whether the request completed in time
+     */
+    public boolean handleRequest(final int serverId, final ZKRequest request, final CompletableFuture<?> completion,
+                                 final long timeoutMillis) throws KeeperException, InterruptedException {
+        handleRequest(serverId, request);
+        try {
+            completion.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (final TimeoutException e) {
+            LOG.warn("Request @ {} did not complete within {} ms", serverId, timeoutMillis);
+            return false;
+        } catch (final ExecutionException e) {
+            LOG.warn("Request @ {} completed exceptionally", serverId, e.getCause());
+            return true;
+        }
+    }
+
     public boolean checkProperty(final ZKProperty property) throws KeeperException, InterruptedException {
         return property.test(clients, clientForServer);
     }
 
     public void stopEnsemble() throws InterruptedException, IOException {
-        for (final var client : clients) {
-            client.close();
-        }
-        clients.clear();
-        clientForServer.clear();
-        serverForClient.clear();
-        for (final var server : servers) {
-            server.shutdown();
-            server.clean();
-        }
+        // The servers' data is wiped below, so there's no point in closing the sessions
+        discardClients();
+        healAll();
+        forEachServer(allIds, serverId -> {
+            servers.get(serverId).shutdown();
+            servers.get(serverId).clean();
+        });
     }
 
     public void tearDown() throws IOException {
         for (final var server : servers) {
             server.tearDown();
         }
+        executor.shutdown();
+        for (final var link : links.values()) {
+            link.forEach(LinkProxy::close);
+        }
+        links.clear();
+        ZKHelper.releasePorts(leasedPorts);
+        leasedPorts.clear();
         LOG.info("Ensemble teardown complete");
     }
 
-    @Override
-    public void process(final WatchedEvent watchedEvent) {
-        // Ignore
+    /***
+     * Tracks the connection state of a single client. We don't rely on {@link ZooKeeper#getState()}, because
+     * the client changes its state to CONNECTING only when it attempts to reconnect, which may happen up to
+     * a second after it has noticed the disconnection.
+     */
+    private class ClientWatcher implements Watcher {
+
+        // Guarded by clientStateMonitor
+        private States state = States.CONNECTING;
+
+        @Override
+        public void process(final WatchedEvent watchedEvent) {
+            if (watchedEvent.getType() != Event.EventType.None) {
+                return;
+            }
+            final States newState;
+            switch (watchedEvent.getState()) {
+                case SyncConnected:
+                case ConnectedReadOnly:
+                    newState = States.CONNECTED;
+                    break;
+                case Disconnected:
+                    newState = States.CONNECTING;
+                    break;
+                case Expired:
+                case Closed:
+                    newState = States.CLOSED;
+                    break;
+                default:
+                    return;
+            }
+            synchronized (clientStateMonitor) {
+                state = newState;
+                clientStateMonitor.notifyAll();
+            }
+        }
     }
 }
@@ -1,30 +1,150 @@
 package edu.upenn.zootester.ensemble;
 
+import org.apache.zookeeper.server.persistence.FileTxnLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ZKHelper {
-    public static final int CONNECTION_TIMEOUT = 60_000;
 
-    private static final Path VAR = Path.of("var");
+    private static final Logger LOG = LoggerFactory.getLogger(ZKHelper.class);
+
+    private static final Path DISK_VAR = Path.of("var");
+    private static final Path SHARED_MEMORY = Path.of("/dev/shm");
+    private static final String MEMORY_VAR = "zootester-var";
     private static final String TEMP_DIRECTORY_PREFIX = "zknode";
+    private static final String RUN_DIRECTORY_PREFIX = "run-";
+    private static final String TRASH_DIRECTORY = "trash";
+
+    // Transaction logs are normally preallocated in 64 MB chunks
+    private static final long MEMORY_PREALLOC_SIZE = 64 * 1024;
+
+    private static volatile Path var = DISK_VAR;
+
+    // The directory of this process inside var, and the trash inside it. Both are created lazily, so that
+    // the persistence mode can be chosen first. Guarded by ZKHelper.class.
+    private static Path runDir = null;
+    private static DirectoryTrash trash = null;
 
     public static Path createTempDir() throws IOException {
-        if (!Files.isDirectory(VAR)) {
-            Files.createDirectory(VAR);
+        return Files.createTempDirectory(getRunDir(), TEMP_DIRECTORY_PREFIX);
+    }
+
+    /***
+     * Deletes the directory in the background. The directory is gone from its location when this returns.
+     */
+    public static void discard(final Path dir) throws IOException {
+        getTrash().discard(dir);
+    }
+
+    /***
+     * All directories of this process live in var/run-PID, so that the directories of processes that were
+     * killed before they could clean up are easy to recognize. We move those into our trash on the first use.
+     */
+    private static synchronized Path getRunDir() throws IOException {
+        if (runDir == null) {
+            final Path varDir = var;
+            Files.createDirectories(varDir);
+            final Path newRunDir = Files.createDirectories(
+                    varDir.resolve(RUN_DIRECTORY_PREFIX + ProcessHandle.current().pid()));
+            trash = new DirectoryTrash(newRunDir.resolve(TRASH_DIRECTORY));
+            runDir = newRunDir;
+            // Whatever the background deleter didn't get to, including the directories of servers that were
+            // never torn down, goes away on a regular exit
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    DirectoryTrash.deleteTree(newRunDir);
+                } catch (final IOException e) {
+                    LOG.warn("Couldn't delete {}", newRunDir, e);
+                }
+            }));
+            purgeDeadRuns(varDir);
+        }
+        return runDir;
+    }
+
+    private static synchronized DirectoryTrash getTrash() throws IOException {
+        getRunDir();
+        return trash;
+    }
+
+    private static void purgeDeadRuns(final Path varDir) throws IOException {
+        final List<Path> deadRuns;
+        try (final Stream<Path> paths = Files.list(varDir)) {
+            deadRuns = paths
+                    .filter(path -> path.getFileName().toString().startsWith(RUN_DIRECTORY_PREFIX))
+                    .filter(path -> !isAlive(path.getFileName().toString().substring(RUN_DIRECTORY_PREFIX.length())))
+                    .collect(Collectors.toList());
         }
-        return Files.createTempDirectory(VAR, TEMP_DIRECTORY_PREFIX);
+        for (final Path deadRun : deadRuns) {
+            LOG.info("Purging {}, whose process is gone", deadRun);
+            trash.discard(deadRun);
+        }
+    }
+
+    private static boolean isAlive(final String pid) {
+        try {
+            return ProcessHandle.of(Long.parseLong(pid)).map(ProcessHandle::isAlive).orElse(false);
+        } catch (final NumberFormatException e) {
+            // Not one of ours
+            return true;
+        }
+    }
+
+    /***
+     * Keeps the data of all subsequently created servers in RAM. If the machine has a tmpfs mounted at
+     * /dev/shm, the data directories are created there; otherwise they stay on disk and rely on the page
+     * cache. In both cases, the servers no longer fsync the transaction log on commit and preallocate much
+     * smaller log files. Since the servers run inside this JVM, their "crashes" never lose the page cache,
+     * so this doesn't change what a restarted server finds in its data directory. Both ZooKeeper settings
+     * are JVM-wide.
+     */
+    public static synchronized void useMemoryPersistence() {
+        if (Files.isDirectory(SHARED_MEMORY) && Files.isWritable(SHARED_MEMORY)) {
+            var = SHARED_MEMORY.resolve(MEMORY_VAR);
+        } else {
+            LOG.warn("{} is not available, keeping the data directories in {}", SHARED_MEMORY, var);
+        }
+        LOG.info("Using memory persistence in {}", var);
+        // Directories created from now on go to the new location
+        runDir = null;
+        System.setProperty("zookeeper.forceSync", "no");
+        FileTxnLog.setPreallocSize(MEMORY_PREALLOC_SIZE);
     }
 
-    private static AtomicInteger nextPort = new AtomicInteger(11221);
+    private static volatile ZKTimingProfile timingProfile = ZKTimingProfile.DEFAULT;
+
+    public static ZKTimingProfile getTimingProfile() {
+        return timingProfile;
+    }
+
+    /***
+     * Sets the timing profile used for all subsequently created servers and clients. The election connect
+     * timeout is a JVM-wide setting of ZooKeeper, so it affects the servers that are already running, too.
+     */
+    public static void setTimingProfile(final ZKTimingProfile timingProfile) {
+        ZKHelper.timingProfile = timingProfile;
+        System.setProperty("zookeeper.cnxTimeout", Integer.toString(timingProfile.getElectionConnectTimeout()));
+    }
+
+    private static final PortAllocator portAllocator = new PortAllocator(11221);
 
     public static void setBasePort(final int basePort) {
-        nextPort = new AtomicInteger(basePort);
+        portAllocator.setBasePort(basePort);
+    }
+
+    public static List<Integer> leasePorts(final int count) throws IOException {
+        return portAllocator.lease(count);
     }
 
-    public static int getUniquePort() {
-        return nextPort.getAndIncrement();
+    public static void releasePorts(final Collection<Integer> ports) {
+        portAllocator.release(ports);
     }
 }
@@ -1,17 +1,19 @@
 package edu.upenn.zootester.ensemble;
 
+import edu.upenn.zootester.util.AssertionFailureError;
 import org.apache.zookeeper.server.admin.AdminServer;
 import org.apache.zookeeper.server.quorum.QuorumPeerConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ZKNodeHandler {
 
@@ -21,23 +23,42 @@ public class ZKNodeHandler {
     private final Path tempDir;
     private final Path confFile;
     private final Path dataDir;
+    private final Path checkpointsDir;
+    private final Runnable stateListener;
 
     private volatile QuorumPeerMainWithShutdown quorumPeerMain;
     private Thread currentThread;
-    private boolean running = false;
+    private volatile boolean running = false;
+    // Waits for the threads of the last crashed QuorumPeerMain to exit. Anything that touches the data
+    // directory or the server's ports has to wait for it first.
+    private Thread reaperThread = null;
 
     public ZKNodeHandler(final int myId, final int clientPort, final String quorumCfgSection) throws IOException {
+        this(myId, clientPort, quorumCfgSection, () -> {
+        });
+    }
+
+    /***
+     * @param stateListener Called whenever the server's peer changes its state, see
+     *                      {@link QuorumPeerMainWithShutdown#QuorumPeerMainWithShutdown(Runnable)}
+     */
+    public ZKNodeHandler(final int myId, final int clientPort, final String quorumCfgSection,
+                         final Runnable stateListener) throws IOException {
         this.myId = myId;
+        this.stateListener = stateListener;
         tempDir = ZKHelper.createTempDir();
         LOG.info("id = {} tempDir = {} clientPort = {}", myId, tempDir.toString(), clientPort);
 
         confFile = Files.createFile(Paths.get(tempDir.toString(), "zoo.cfg"));
         dataDir = Files.createDirectory(Paths.get(tempDir.toString(), "data"));
+        checkpointsDir = Paths.get(tempDir.toString(), "checkpoints");
 
         try (final BufferedWriter writer = Files.newBufferedWriter(confFile)) {
-            writer.write("tickTime=2000\n");
-            writer.write("initLimit=5\n");
-            writer.write("syncLimit=3\n");
+            final ZKTimingProfile timingProfile = ZKHelper.getTimingProfile();
+            writer.write("tickTime=" + timingProfile.getTickTime() + "\n");
+            writer.write("initLimit=" + timingProfile.getInitLimit() + "\n");
+            writer.write("syncLimit=" + timingProfile.getSyncLimit() + "\n");
+            writer.write("maxSessionTimeout=" + timingProfile.getMaxSessionTimeout() + "\n");
             writer.write("dataDir=" + dataDir.toString() + "\n");
             writer.write("clientPort=" + clientPort + "\n");
             writer.write(quorumCfgSection + "\n");
@@ -46,9 +67,10 @@ public class ZKNodeHandler {
         Files.writeString(Paths.get(dataDir.toString(), "myid"), Integer.toString(myId));
     }
 
-    public void start() {
+    public void start() throws InterruptedException {
+        awaitReaper();
         LOG.debug("Starting new QuorumPeerMain with id={}", myId);
-        quorumPeerMain = new QuorumPeerMainWithShutdown();
+        quorumPeerMain = new QuorumPeerMainWithShutdown(stateListener);
         currentThread = new Thread(() -> {
             try {
                 quorumPeerMain.initializeAndRun(new String[]{confFile.toString()});
@@ -65,6 +87,7 @@ public class ZKNodeHandler {
     }
 
     public void shutdown() throws InterruptedException {
+        awaitReaper();
         LOG.debug("Shutting down QuorumPeerMain with id={}", myId);
         final Thread t = currentThread;
         if (t != null && t.isAlive()) {
@@ -77,6 +100,45 @@ public class ZKNodeHandler {
         running = false;
     }
 
+    /***
+     * Crashes the server abruptly, see {@link QuorumPeerMainWithShutdown#crash()}. A reaper thread then releases
+     * the crashed peer's data directory and ports in the background. The next start, clean, checkpoint or
+     * restore of the server waits for the reaper.
+     */
+    public void crash() throws InterruptedException {
+        awaitReaper();
+        LOG.debug("Crashing QuorumPeerMain with id={}", myId);
+        final Thread t = currentThread;
+        if (t != null && t.isAlive()) {
+            final QuorumPeerMainWithShutdown crashedPeerMain = quorumPeerMain;
+            crashedPeerMain.crash();
+            reaperThread = new Thread(() -> {
+                try {
+                    crashedPeerMain.reap();
+                    t.join(500);
+                } catch (final InterruptedException e) {
+                    LOG.warn("Interrupted while reaping QuorumPeerMain with id={}", myId);
+                } catch (final AssertionFailureError e) {
+                    LOG.error("Failed to reap QuorumPeerMain with id={}", myId, e);
+                }
+                if (t.isAlive()) {
+                    LOG.error("Failed to join QuorumPeerMain's thread after 500 ms");
+                }
+            });
+            reaperThread.setDaemon(true);
+            reaperThread.start();
+        }
+        running = false;
+    }
+
+    private void awaitReaper() throws InterruptedException {
+        final Thread t = reaperThread;
+        if (t != null) {
+            t.join();
+            reaperThread = null;
+        }
+    }
+
     public boolean isAlive() {
         final Thread t = currentThread;
         return t != null && t.isAlive();
@@ -88,20 +150,99 @@ public class ZKNodeHandler {
 
     private void deleteDir(final Path dir) throws IOException {
         LOG.info("Deleting {}", dir);
-        Files.walk(dir)
-                .sorted(Comparator.reverseOrder())
-                .map(Path::toFile)
-                .forEach(File::delete);
+        ZKHelper.discard(dir);
     }
 
-    public void clean() throws IOException {
+    public void clean() throws IOException, InterruptedException {
+        awaitReaper();
         deleteDir(quorumPeerMain.getTxnFactoryDataDir());
     }
 
+    /***
+     * Saves the data directory (snapshots, transaction logs and epoch files) under the given name, so that
+     * it can later be restored with {@link #restore(String)}. The server should not be running.
+     */
+    public void checkpoint(final String name) throws IOException, InterruptedException {
+        awaitReaper();
+        final Path checkpointDir = getCheckpointDir(name);
+        LOG.info("Checkpointing {} to {}", dataDir, checkpointDir);
+        if (Files.exists(checkpointDir)) {
+            deleteDir(checkpointDir);
+        }
+        copyDir(dataDir, checkpointDir);
+    }
+
+    public boolean hasCheckpoint(final String name) {
+        return Files.isDirectory(getCheckpointDir(name));
+    }
+
+    /***
+     * Replaces the data directory with the checkpoint of the given name. The server should not be running.
+     */
+    public void restore(final String name) throws IOException, InterruptedException {
+        awaitReaper();
+        final Path checkpointDir = getCheckpointDir(name);
+        LOG.debug("Restoring {} from {}", dataDir, checkpointDir);
+        deleteDir(dataDir);
+        copyDir(checkpointDir, dataDir);
+    }
+
+    public void dropCheckpoint(final String name) throws IOException {
+        final Path checkpointDir = getCheckpointDir(name);
+        if (Files.exists(checkpointDir)) {
+            deleteDir(checkpointDir);
+        }
+    }
+
+    private Path getCheckpointDir(final String name) {
+        return checkpointsDir.resolve(name);
+    }
+
+    /***
+     * Copies the directory tree rooted at source to target. Snapshots are never modified once written,
+     * so we hard-link them whenever the file system allows it. Transaction logs are appended to, and
+     * therefore always copied.
+     */
+    private static void copyDir(final Path source, final Path target) throws IOException {
+        final List<Path> paths;
+        try (final Stream<Path> stream = Files.walk(source)) {
+            paths = stream.sorted().collect(Collectors.toList());
+        }
+        for (final Path path : paths) {
+            final Path copy = target.resolve(source.relativize(path).toString());
+            if (Files.isDirectory(path)) {
+                Files.createDirectories(copy);
+            } else if (path.getFileName().toString().startsWith("snapshot.")) {
+                try {
+                    Files.createLink(copy, path);
+                } catch (final IOException | UnsupportedOperationException e) {
+                    Files.copy(path, copy);
+                }
+            } else {
+                Files.copy(path, copy);
+            }
+        }
+    }
+
     public void tearDown() throws IOException {
+        try {
+            awaitReaper();
+        } catch (final InterruptedException e) {
+            LOG.warn("Interrupted from waiting on the reaper of server {}", myId);
+        }
         deleteDir(tempDir);
     }
 
+    public boolean isServing() {
+        final QuorumPeerMainWithShutdown peerMain = quorumPeerMain;
+        return running && peerMain != null && peerMain.isServing();
+    }
+
+    public boolean isEstablishedLeader() {
+        final QuorumPeerMainWithShutdown peerMain = quorumPeerMain;
+        return running && peerMain != null && peerMain.isEstablishedLeader();
+    }
+
     public boolean isLeader() {
         final Thread t = currentThread;
         return t != null && t.isAlive() && quorumPeerMain.isLeader();
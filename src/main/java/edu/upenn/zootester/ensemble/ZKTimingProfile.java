@@ -0,0 +1,128 @@
+package edu.upenn.zootester.ensemble;
+
+/***
+ * Timing parameters of the embedded ZooKeeper peers and their clients. The election finalize wait of
+ * ZooKeeper 3.5 is a compile-time constant (200 ms), so it cannot be part of the profile.
+ */
+public class ZKTimingProfile {
+
+    // 40 s is what the clients got before profiles existed: they asked for 60 s, and the servers capped it at
+    // 20 ticks. The fast profile's sessions are 50 ticks long, since clients have to keep their sessions while
+    // their servers are restarted.
+    public static final ZKTimingProfile DEFAULT = new ZKTimingProfile("default", 2000, 5, 3, 40_000, 5_000);
+    public static final ZKTimingProfile FAST = new ZKTimingProfile("fast", 100, 20, 10, 5_000, 1_000);
+
+    private final String name;
+    private final int tickTime;
+    private final int initLimit;
+    private final int syncLimit;
+    private final int sessionTimeout;
+    private final int electionConnectTimeout;
+
+    /***
+     * @param tickTime               Basic time unit of the peers in milliseconds
+     * @param initLimit              Ticks a follower may take to connect and sync to the leader
+     * @param syncLimit              Ticks a follower may lag behind the leader
+     * @param sessionTimeout         Session timeout of the clients in milliseconds
+     * @param electionConnectTimeout Timeout for opening leader election connections in milliseconds
+     */
+    public ZKTimingProfile(final String name, final int tickTime, final int initLimit, final int syncLimit,
+                           final int sessionTimeout, final int electionConnectTimeout) {
+        this.name = name;
+        this.tickTime = tickTime;
+        this.initLimit = initLimit;
+        this.syncLimit = syncLimit;
+        this.sessionTimeout = sessionTimeout;
+        this.electionConnectTimeout = electionConnectTimeout;
+    }
+
+    /***
+     * @param name The name of a predefined profile, or a profile encoded by {@link #encode()}
+     */
+    public static ZKTimingProfile forName(final String name) {
+        switch (name) {
+            case "default":
+                return DEFAULT;
+            case "fast":
+                return FAST;
+            default:
+                return decode(name);
+        }
+    }
+
+    /***
+     * Encodes the profile as name:tickTime:initLimit:syncLimit:sessionTimeout:electionConnectTimeout, e.g., to
+     * pass a calibrated profile to worker JVMs.
+     */
+    public String encode() {
+        return name + ":" + tickTime + ":" + initLimit + ":" + syncLimit + ":" + sessionTimeout + ":"
+                + electionConnectTimeout;
+    }
+
+    private static ZKTimingProfile decode(final String encoded) {
+        final String[] fields = encoded.split(":");
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("Unknown timing profile " + encoded);
+        }
+        try {
+            return new ZKTimingProfile(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                    Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), Integer.parseInt(fields[5]));
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Unknown timing profile " + encoded, e);
+        }
+    }
+
+    /***
+     * Returns a profile with the same limits and timeouts as this one, but with the given tick time. The session
+     * timeout is scaled with the tick time, so that it stays the same number of ticks.
+     */
+    public ZKTimingProfile withTickTime(final String name, final int tickTime) {
+        final int scaledSessionTimeout = (int) ((long) sessionTimeout * tickTime / this.tickTime);
+        return new ZKTimingProfile(name, tickTime, initLimit, syncLimit, scaledSessionTimeout,
+                electionConnectTimeout);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTickTime() {
+        return tickTime;
+    }
+
+    public int getInitLimit() {
+        return initLimit;
+    }
+
+    public int getSyncLimit() {
+        return syncLimit;
+    }
+
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /***
+     * The servers negotiate session timeouts into the range [2 * tickTime, 20 * tickTime] by default,
+     * so we raise the upper bound whenever the requested session timeout is above it.
+     */
+    public int getMaxSessionTimeout() {
+        return Math.max(20 * tickTime, sessionTimeout);
+    }
+
+    public int getElectionConnectTimeout() {
+        return electionConnectTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return "ZKTimingProfile{" +
+                "name='" + name + '\'' +
+                ", tickTime=" + tickTime +
+                ", initLimit=" + initLimit +
+                ", syncLimit=" + syncLimit +
+                ", sessionTimeout=" + sessionTimeout +
+                ", electionConnectTimeout=" + electionConnectTimeout +
+                '}';
+    }
+}
@@ -1,5 +1,7 @@
 package edu.upenn.zootester.fault;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 public abstract class FaultGenerator {
@@ -33,6 +35,19 @@ public abstract class FaultGenerator {
         remainingFaultBudget = faultBudget;
     }
 
+    /***
+     * Captures the progress of the generator, so that it can later be rewound to this point with
+     * {@link #setState(State)}.
+     */
+    public State getState() {
+        return new State(remainingRounds, remainingFaultBudget);
+    }
+
+    public void setState(final State state) {
+        remainingRounds = state.remainingRounds;
+        remainingFaultBudget = state.remainingFaultBudget;
+    }
+
     public int generate() {
         if (remainingRounds == 0) {
             return 0;
@@ -63,6 +78,25 @@ public abstract class FaultGenerator {
         return faults;
     }
 
+    /***
+     * @return Every number of faults that {@link #generate()} may return for the next round
+     */
+    public List<Integer> possibleFaults() {
+        final List<Integer> result = new ArrayList<>();
+        if (remainingRounds == 0) {
+            result.add(0);
+        } else if (totalArrangements[remainingRounds][remainingFaultBudget] == 0) {
+            result.add(maxFaultsPerRound);
+        } else {
+            for (int i = 0; i <= Math.min(maxFaultsPerRound, remainingFaultBudget); ++i) {
+                if (totalArrangements[remainingRounds - 1][remainingFaultBudget - i] > 0) {
+                    result.add(i);
+                }
+            }
+        }
+        return result;
+    }
+
     /***
      * Populates the table totalArrangements so that at the end the number
      * totalArrangements[n][d] is equal to the number of ways of distributing d balls (faults) into
@@ -104,4 +138,15 @@ public abstract class FaultGenerator {
         }
         return low;
     }
+
+    public static class State {
+
+        private final int remainingRounds;
+        private final int remainingFaultBudget;
+
+        private State(final int remainingRounds, final int remainingFaultBudget) {
+            this.remainingRounds = remainingRounds;
+            this.remainingFaultBudget = remainingFaultBudget;
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package edu.upenn.zootester.fault;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/***
+ * The faults of all phases of an execution, in order.
+ */
+public class FaultSchedule {
+
+    private final List<PhaseFaults> phaseFaults;
+
+    public FaultSchedule(final List<PhaseFaults> phaseFaults) {
+        this.phaseFaults = Collections.unmodifiableList(new ArrayList<>(phaseFaults));
+    }
+
+    public List<PhaseFaults> getPhaseFaults() {
+        return phaseFaults;
+    }
+
+    public PhaseFaults get(final int phaseIndex) {
+        return phaseFaults.get(phaseIndex);
+    }
+
+    public int size() {
+        return phaseFaults.size();
+    }
+
+    /***
+     * Encodes the schedule as a single line of text without whitespace, e.g., "0,2/2;/;1/" for three phases.
+     * Each phase lists the servers to crash and, after the slash, the servers to crash later. Equal schedules
+     * have equal encodings, so the encoding also serves as the schedule's signature.
+     */
+    public String encode() {
+        return phaseFaults.stream()
+                .map(faults -> encodeServers(faults.getServersToCrash()) + '/'
+                        + encodeServers(faults.getServersToCrashLater()))
+                .collect(Collectors.joining(";"));
+    }
+
+    public static FaultSchedule decode(final String encoded) {
+        final List<PhaseFaults> phaseFaults = new ArrayList<>();
+        if (!encoded.isEmpty()) {
+            for (final String encodedPhase : encoded.split(";", -1)) {
+                final String[] parts = encodedPhase.split("/", -1);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Malformed phase faults " + encodedPhase);
+                }
+                phaseFaults.add(new PhaseFaults(decodeServers(parts[0]), decodeServers(parts[1])));
+            }
+        }
+        return new FaultSchedule(phaseFaults);
+    }
+
+    private static String encodeServers(final List<Integer> servers) {
+        return servers.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static List<Integer> decodeServers(final String encoded) {
+        if (encoded.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(encoded.split(",")).map(Integer::valueOf).collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return phaseFaults.equals(((FaultSchedule) o).phaseFaults);
+    }
+
+    @Override
+    public int hashCode() {
+        return phaseFaults.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "FaultSchedule{" + encode() + '}';
+    }
+}
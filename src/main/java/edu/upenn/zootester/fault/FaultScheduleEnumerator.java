@@ -0,0 +1,214 @@
+package edu.upenn.zootester.fault;
+
+import edu.upenn.zootester.harness.Phase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Enumerates all fault schedules of a harness in a fixed order. In each phase, a number of faults is chosen
+ * such that the faults of all phases add up to exactly the fault budget, with at most maxFaultsPerRound faults
+ * in a phase, as in {@link ExactFaultGenerator}. Then a subset of servers of that size is crashed, and in
+ * phases with a request, any subset of the crashed servers is crashed later.
+ * <p>
+ * Every schedule has a rank between 0 and {@link #size()} - 1, and {@link #unrank(long)} computes the schedule
+ * of a rank directly, so disjoint ranges of ranks can be explored independently, e.g., by different threads
+ * or processes.
+ */
+public class FaultScheduleEnumerator {
+
+    private final int totalNodes;
+    private final int maxFaultsPerRound;
+    private final int faultBudget;
+    private final boolean[] hasRequest;
+
+    // binomial[n][k] is n choose k
+    private final long[][] binomial;
+
+    // totalSchedules[i][b] is the number of ways of scheduling b faults into the phases i, i + 1, ...
+    private final long[][] totalSchedules;
+
+    /***
+     * @throws ArithmeticException If there are too many schedules to rank them with a long
+     */
+    public FaultScheduleEnumerator(final List<Phase> phases, final int totalNodes, final int maxFaultsPerRound,
+                                   final int faultBudget) {
+        this.totalNodes = totalNodes;
+        this.maxFaultsPerRound = Math.min(maxFaultsPerRound, totalNodes);
+        this.faultBudget = faultBudget;
+        this.hasRequest = new boolean[phases.size()];
+        for (int i = 0; i < phases.size(); ++i) {
+            hasRequest[i] = phases.get(i).match(emptyPhase -> false, requestPhase -> true);
+        }
+        this.binomial = computeBinomials(totalNodes);
+        this.totalSchedules = computeSchedules();
+    }
+
+    private static long[][] computeBinomials(final int n) {
+        final long[][] binomial = new long[n + 1][n + 1];
+        for (int i = 0; i <= n; ++i) {
+            binomial[i][0] = 1;
+            for (int j = 1; j <= i; ++j) {
+                binomial[i][j] = Math.addExact(binomial[i - 1][j - 1], binomial[i - 1][j]);
+            }
+        }
+        return binomial;
+    }
+
+    private long[][] computeSchedules() {
+        final int totalPhases = hasRequest.length;
+        final long[][] schedules = new long[totalPhases + 1][faultBudget + 1];
+        schedules[totalPhases][0] = 1;
+        for (int i = totalPhases - 1; i >= 0; --i) {
+            for (int b = 0; b <= faultBudget; ++b) {
+                long sum = 0;
+                for (int f = 0; f <= Math.min(maxFaultsPerRound, b); ++f) {
+                    sum = Math.addExact(sum, Math.multiplyExact(phaseChoices(i, f), schedules[i + 1][b - f]));
+                }
+                schedules[i][b] = sum;
+            }
+        }
+        return schedules;
+    }
+
+    /***
+     * The number of ways of choosing the faults of a phase with the given number of faults.
+     */
+    private long phaseChoices(final int phase, final int faults) {
+        final long laterChoices = hasRequest[phase] ? 1L << faults : 1;
+        return Math.multiplyExact(binomial[totalNodes][faults], laterChoices);
+    }
+
+    /***
+     * @return The total number of schedules
+     */
+    public long size() {
+        return totalSchedules[0][faultBudget];
+    }
+
+    public FaultSchedule unrank(final long rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " out of " + size() + " schedules");
+        }
+        final List<PhaseFaults> phaseFaults = new ArrayList<>();
+        long remainingRank = rank;
+        int remainingBudget = faultBudget;
+        for (int i = 0; i < hasRequest.length; ++i) {
+            // Find the number of faults of this phase: the schedules are ordered by it first
+            int faults = 0;
+            long block = phaseChoices(i, 0) * totalSchedules[i + 1][remainingBudget];
+            while (remainingRank >= block) {
+                remainingRank -= block;
+                ++faults;
+                block = phaseChoices(i, faults) * totalSchedules[i + 1][remainingBudget - faults];
+            }
+            final long rest = totalSchedules[i + 1][remainingBudget - faults];
+            final long choice = remainingRank / rest;
+            remainingRank %= rest;
+            remainingBudget -= faults;
+
+            // Then by the servers to crash, and then by the subset of them to crash later
+            final long laterChoices = hasRequest[i] ? 1L << faults : 1;
+            final List<Integer> serversToCrash = unrankSubset(choice / laterChoices, faults);
+            final List<Integer> serversToCrashLater = new ArrayList<>();
+            final long laterMask = choice % laterChoices;
+            for (int j = 0; j < faults; ++j) {
+                if ((laterMask & (1L << j)) != 0) {
+                    serversToCrashLater.add(serversToCrash.get(j));
+                }
+            }
+            phaseFaults.add(new PhaseFaults(serversToCrash, serversToCrashLater));
+        }
+        return new FaultSchedule(phaseFaults);
+    }
+
+    /***
+     * @throws IllegalArgumentException If the schedule isn't one of the enumerated schedules
+     */
+    public long rank(final FaultSchedule schedule) {
+        if (schedule.size() != hasRequest.length) {
+            throw new IllegalArgumentException("Expected " + hasRequest.length + " phases in " + schedule);
+        }
+        long rank = 0;
+        int remainingBudget = faultBudget;
+        for (int i = 0; i < hasRequest.length; ++i) {
+            final PhaseFaults phaseFaults = schedule.get(i);
+            final List<Integer> serversToCrash = phaseFaults.getServersToCrash();
+            final int faults = serversToCrash.size();
+            if (faults > Math.min(maxFaultsPerRound, remainingBudget)) {
+                throw new IllegalArgumentException("Too many faults in phase " + i + " of " + schedule);
+            }
+            for (int f = 0; f < faults; ++f) {
+                rank += phaseChoices(i, f) * totalSchedules[i + 1][remainingBudget - f];
+            }
+
+            long laterMask = 0;
+            for (final int server : phaseFaults.getServersToCrashLater()) {
+                final int j = serversToCrash.indexOf(server);
+                if (j < 0 || !hasRequest[i]) {
+                    throw new IllegalArgumentException("Unexpected server to crash later in phase " + i
+                            + " of " + schedule);
+                }
+                laterMask |= 1L << j;
+            }
+            final long laterChoices = hasRequest[i] ? 1L << faults : 1;
+            final long choice = rankSubset(serversToCrash) * laterChoices + laterMask;
+            remainingBudget -= faults;
+            rank += choice * totalSchedules[i + 1][remainingBudget];
+        }
+        if (remainingBudget != 0) {
+            throw new IllegalArgumentException("Expected " + faultBudget + " faults in " + schedule);
+        }
+        return rank;
+    }
+
+    /***
+     * Computes the subset of size k of the servers with the given rank, in the lexicographic order of the
+     * sorted subsets.
+     */
+    private List<Integer> unrankSubset(long rank, final int k) {
+        final List<Integer> subset = new ArrayList<>();
+        int next = 0;
+        for (int remaining = k; remaining > 0; --remaining) {
+            // The number of subsets that start with next is the number of ways of choosing the rest after it
+            while (rank >= binomial[totalNodes - next - 1][remaining - 1]) {
+                rank -= binomial[totalNodes - next - 1][remaining - 1];
+                ++next;
+            }
+            subset.add(next);
+            ++next;
+        }
+        return subset;
+    }
+
+    private long rankSubset(final List<Integer> subset) {
+        long rank = 0;
+        int next = 0;
+        for (int i = 0; i < subset.size(); ++i) {
+            final int server = subset.get(i);
+            if (server < next || server >= totalNodes) {
+                throw new IllegalArgumentException("Servers " + subset + " aren't sorted or out of range");
+            }
+            final int remaining = subset.size() - i;
+            for (; next < server; ++next) {
+                rank += binomial[totalNodes - next - 1][remaining - 1];
+            }
+            ++next;
+        }
+        return rank;
+    }
+
+    /***
+     * Splits the ranks into contiguous ranges of nearly equal sizes.
+     *
+     * @return The first rank of the part and the first rank after it
+     */
+    public long[] partition(final int part, final int parts) {
+        final long size = size();
+        final long quotient = size / parts;
+        final long remainder = size % parts;
+        final long from = part * quotient + Math.min(part, remainder);
+        final long to = from + quotient + (part < remainder ? 1 : 0);
+        return new long[]{from, to};
+    }
+}
@@ -0,0 +1,53 @@
+package edu.upenn.zootester.fault;
+
+import java.util.List;
+import java.util.Objects;
+
+/***
+ * The faults chosen for a single phase. The servers in serversToCrash are down during the phase. The servers
+ * in serversToCrashLater are a subset of serversToCrash that are started with the others, and crashed right
+ * before the phase's request is issued.
+ */
+public class PhaseFaults {
+
+    private final List<Integer> serversToCrash;
+    private final List<Integer> serversToCrashLater;
+
+    public PhaseFaults(final List<Integer> serversToCrash, final List<Integer> serversToCrashLater) {
+        this.serversToCrash = serversToCrash;
+        this.serversToCrashLater = serversToCrashLater;
+    }
+
+    public List<Integer> getServersToCrash() {
+        return serversToCrash;
+    }
+
+    public List<Integer> getServersToCrashLater() {
+        return serversToCrashLater;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final PhaseFaults that = (PhaseFaults) o;
+        return serversToCrash.equals(that.serversToCrash) && serversToCrashLater.equals(that.serversToCrashLater);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(serversToCrash, serversToCrashLater);
+    }
+
+    @Override
+    public String toString() {
+        return "PhaseFaults{" +
+                "serversToCrash=" + serversToCrash +
+                ", serversToCrashLater=" + serversToCrashLater +
+                '}';
+    }
+}
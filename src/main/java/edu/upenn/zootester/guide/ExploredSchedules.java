@@ -0,0 +1,207 @@
+package edu.upenn.zootester.guide;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * The set of (harness, fault schedule) pairs that have already been explored, kept in an append-only file
+ * so that it survives across campaigns. Each pair is stored as a 64-bit hash of its signature, which keeps
+ * the file at 8 bytes per entry at the price of a negligible chance of false positives. The two lowest bits
+ * of an entry tell whether the execution of the schedule was claimed, finished, or released again.
+ * <p>
+ * A schedule is claimed before its execution, so that no other scenario runs it at the same time, and only
+ * counts as explored once its execution has finished. Executions that fail otherwise, e.g., because the
+ * ensemble couldn't be started, release their claim, so that the schedule is tried again. Claims that were
+ * never finished, because the process that made them was interrupted, are ignored by processes that open
+ * the file later, e.g., when resuming the campaign.
+ * <p>
+ * The set is shared by all scenarios in the JVM that use the same file. Processes that share the file, like
+ * forked workers, see each other's entries: every claim reads the entries appended by others and appends
+ * its own while holding a lock on the file.
+ */
+public class ExploredSchedules {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExploredSchedules.class);
+
+    /***
+     * The number of times that scenarios resample a schedule that has been explored before, after which
+     * they skip the execution
+     */
+    public static final int MAX_RESAMPLES = 16;
+
+    private static final Map<Path, ExploredSchedules> SETS = new ConcurrentHashMap<>();
+
+    private static final int ENTRY_SIZE = Long.BYTES;
+    private static final long KIND_MASK = 0b11;
+    private static final long CLAIMED = 0;
+    private static final long FINISHED = 1;
+    private static final long RELEASED = 2;
+
+    private final Path file;
+    // Guarded by this
+    private final Set<Long> explored = new HashSet<>();
+    private final Set<Long> claimed = new HashSet<>();
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024 * ENTRY_SIZE);
+    private long readPosition = 0;
+
+    private ExploredSchedules(final Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        synchronized (this) {
+            final FileLock lock = channel.lock();
+            try {
+                readNewEntries();
+            } finally {
+                lock.release();
+            }
+            // The claims that are in the file already were made by processes that have been interrupted
+            claimed.clear();
+        }
+        LOG.info("Loaded {} explored schedules from {}", explored.size(), file);
+    }
+
+    /***
+     * Opens the set stored in the file, creating the file if it doesn't exist.
+     */
+    public static ExploredSchedules open(final Path file) throws IOException {
+        try {
+            return SETS.computeIfAbsent(file.toAbsolutePath().normalize(), path -> {
+                try {
+                    return new ExploredSchedules(path);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /***
+     * Claims the execution of the schedule of the harness, unless it has been explored or claimed already.
+     * The claim has to be ended with {@link #finish(String, FaultSchedule, ExecutionOutcome)}.
+     *
+     * @return Whether the schedule was claimed
+     */
+    public synchronized boolean claim(final String encodedHarness, final FaultSchedule schedule)
+            throws IOException {
+        final long hash = hash(encodedHarness, schedule);
+        final FileLock lock = channel.lock();
+        try {
+            readNewEntries();
+            if (explored.contains(hash) || claimed.contains(hash)) {
+                return false;
+            }
+            append(hash | CLAIMED);
+            return true;
+        } finally {
+            lock.release();
+        }
+    }
+
+    /***
+     * Ends the claim of the schedule once its execution is over. The schedule counts as explored, unless the
+     * execution failed otherwise, in which case it is released to be tried again.
+     */
+    public synchronized void finish(final String encodedHarness, final FaultSchedule schedule,
+                                    final ExecutionOutcome outcome) throws IOException {
+        final long hash = hash(encodedHarness, schedule);
+        final FileLock lock = channel.lock();
+        try {
+            append(hash | (outcome == ExecutionOutcome.FAILED_OTHERWISE ? RELEASED : FINISHED));
+        } finally {
+            lock.release();
+        }
+    }
+
+    /***
+     * @return The number of schedules that have been explored or are being explored
+     */
+    public synchronized int size() {
+        final Set<Long> all = new HashSet<>(explored);
+        all.addAll(claimed);
+        return all.size();
+    }
+
+    /***
+     * Appends the entry at the end of the file, and reads it back along with the entries that others have
+     * appended before it. The caller holds the lock on the file.
+     */
+    private void append(final long entry) throws IOException {
+        final ByteBuffer bytes = ByteBuffer.allocate(ENTRY_SIZE).putLong(0, entry);
+        long position = channel.size();
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+        readNewEntries();
+    }
+
+    /***
+     * Reads the entries that have been appended since the last read, by us or by other processes. The caller
+     * holds the lock on the file, so there are no partially written entries.
+     */
+    private void readNewEntries() throws IOException {
+        final long size = channel.size();
+        while (size - readPosition >= ENTRY_SIZE) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), (size - readPosition) / ENTRY_SIZE * ENTRY_SIZE));
+            final int read = channel.read(buffer, readPosition);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= ENTRY_SIZE) {
+                final long entry = buffer.getLong();
+                final long hash = entry & ~KIND_MASK;
+                final long kind = entry & KIND_MASK;
+                if (kind == CLAIMED) {
+                    claimed.add(hash);
+                } else {
+                    claimed.remove(hash);
+                    if (kind == FINISHED) {
+                        explored.add(hash);
+                    }
+                }
+                readPosition += ENTRY_SIZE;
+            }
+        }
+    }
+
+    private static long hash(final String encodedHarness, final FaultSchedule schedule) {
+        return hash(encodedHarness + '#' + schedule.encode()) & ~KIND_MASK;
+    }
+
+    private static long hash(final String signature) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return ByteBuffer.wrap(digest.digest(signature.getBytes(StandardCharsets.UTF_8))).getLong();
+    }
+
+    @Override
+    public String toString() {
+        return "ExploredSchedules{file=" + file + '}';
+    }
+}
@@ -0,0 +1,133 @@
+package edu.upenn.zootester.guide;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.fault.PhaseFaults;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/***
+ * Biases the choice of fault schedules towards schedules that produce rarely seen outcomes. After each
+ * execution, the guide records the execution's fingerprint, which only describes the outcome, so that
+ * different schedules with the same outcome share a fingerprint. It credits every feature of the schedule,
+ * i.e., the faults of each phase and the schedule as a whole, with the novelty of the fingerprint, which is
+ * the inverse of how often the fingerprint has been seen. A candidate schedule scores the average novelty of its
+ * features, where features that haven't been tried yet count as fully novel, and candidates are chosen with
+ * probabilities proportional to their scores.
+ * <p>
+ * Fingerprints are only comparable between executions of the same harness, so there's one guide per harness.
+ * The guides are shared by all scenarios in the JVM, and are thread-safe.
+ */
+public class NoveltyGuide {
+
+    /***
+     * The number of random candidates that scenarios generate for the guide to choose from
+     */
+    public static final int CANDIDATES = 8;
+
+    private static final Map<String, NoveltyGuide> GUIDES = new ConcurrentHashMap<>();
+
+    // Keeps a small chance of choosing candidates whose features never produce anything new
+    private static final double MIN_SCORE = 0.01;
+
+    private final Map<String, Integer> fingerprintCounts = new HashMap<>();
+    private final Map<String, FeatureStats> featureStats = new HashMap<>();
+
+    private static class FeatureStats {
+
+        private double totalNovelty = 0.0;
+        private int executions = 0;
+
+        double getScore() {
+            return totalNovelty / executions;
+        }
+    }
+
+    /***
+     * @param encodedHarness The encoding of the harness whose executions the guide directs
+     */
+    public static NoveltyGuide forHarness(final String encodedHarness) {
+        return GUIDES.computeIfAbsent(encodedHarness, ignored -> new NoveltyGuide());
+    }
+
+    /***
+     * Builds the fingerprint of an execution from its observations.
+     *
+     * @param observedStates The final key-value state observed at each server
+     * @param leaderHistory  The leaders established during the execution, in order
+     */
+    public static String fingerprint(final Set<Integer> executedPhases,
+                                     final Set<Integer> maybeExecutedPhases,
+                                     final List<Map<String, Integer>> observedStates,
+                                     final List<Integer> leaderHistory) {
+        final List<Map<String, Integer>> sortedStates = observedStates.stream()
+                .map(TreeMap::new)
+                .collect(Collectors.toList());
+        return new TreeSet<>(executedPhases) + "|" + new TreeSet<>(maybeExecutedPhases)
+                + '|' + sortedStates + '|' + leaderHistory;
+    }
+
+    private static List<String> features(final FaultSchedule schedule) {
+        final List<String> features = new ArrayList<>();
+        final List<PhaseFaults> phaseFaults = schedule.getPhaseFaults();
+        for (int i = 0; i < phaseFaults.size(); ++i) {
+            features.add(i + ":" + phaseFaults.get(i));
+        }
+        features.add(schedule.encode());
+        return features;
+    }
+
+    private double score(final FaultSchedule schedule) {
+        final List<String> features = features(schedule);
+        double total = 0.0;
+        for (final String feature : features) {
+            final FeatureStats stats = featureStats.get(feature);
+            total += stats == null ? 1.0 : stats.getScore();
+        }
+        return Math.max(MIN_SCORE, total / features.size());
+    }
+
+    /***
+     * Chooses one of the candidates, preferring those whose features have produced novel fingerprints.
+     */
+    public synchronized FaultSchedule choose(final List<FaultSchedule> candidates, final Random random) {
+        final double[] cumulativeScores = new double[candidates.size()];
+        double total = 0.0;
+        for (int i = 0; i < candidates.size(); ++i) {
+            total += score(candidates.get(i));
+            cumulativeScores[i] = total;
+        }
+        final double p = random.nextDouble() * total;
+        for (int i = 0; i < candidates.size(); ++i) {
+            if (p < cumulativeScores[i]) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+
+    /***
+     * Records the fingerprint of an execution of the schedule.
+     */
+    public synchronized void record(final FaultSchedule schedule, final String fingerprint) {
+        final int count = fingerprintCounts.merge(fingerprint, 1, Integer::sum);
+        final double novelty = 1.0 / count;
+        for (final String feature : features(schedule)) {
+            final FeatureStats stats = featureStats.computeIfAbsent(feature, ignored -> new FeatureStats());
+            stats.totalNovelty += novelty;
+            ++stats.executions;
+        }
+    }
+
+    public synchronized int getDistinctFingerprints() {
+        return fingerprintCounts.size();
+    }
+}
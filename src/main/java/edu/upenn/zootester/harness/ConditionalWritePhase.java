@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 public class ConditionalWritePhase implements RequestPhase {
@@ -34,7 +35,7 @@ public class ConditionalWritePhase implements RequestPhase {
     }
 
     @Override
-    public ZKRequest getRequest(final Runnable onSuccess, final Runnable onUnknown, final Runnable cleanup) {
+    public ZKRequest getRequest(final CompletableFuture<RequestOutcome> completion) {
         return (zk, serverId) -> {
             LOG.info("Request @ {}: Read {} (expecting {})", serverId, readKey, readValue);
             zk.getData(readKey, false, (gReturnCode, gKey, gCtx, gResult, gStat) -> {
@@ -43,25 +44,23 @@ public class ConditionalWritePhase implements RequestPhase {
                             serverId, readKey, new String(gResult), readValue);
                     if (Arrays.equals(gResult, rawReadValue)) {
                         LOG.info("Request @ {}: Write {} -> {}", serverId, writeKey, writeValue);
+                        // The request completes in the write's callback
                         zk.setData(writeKey, rawWriteValue, -1, (sReturnCode, sKey, sCtx, sStat) -> {
                             if (KeeperException.Code.OK.intValue() == sReturnCode) {
-                                onSuccess.run();
+                                completion.complete(RequestOutcome.SUCCESS);
                             } else {
                                 LOG.warn("zk.setData() returned {}", KeeperException.Code.get(sReturnCode));
-                                onUnknown.run();
+                                completion.complete(RequestOutcome.UNKNOWN);
                             }
                         }, null);
                     } else {
-                        onSuccess.run();
+                        completion.complete(RequestOutcome.SUCCESS);
                     }
                 } else {
                     LOG.warn("zk.getData() returned {}. Treating as non-executed.", KeeperException.Code.get(gReturnCode));
+                    completion.complete(RequestOutcome.NOT_EXECUTED);
                 }
-                cleanup.run();
             }, null);
-            Thread.sleep(100);
-//            System.gc();
-            LOG.info("Woke up!");
         };
     }
 
@@ -1,6 +1,5 @@
 package edu.upenn.zootester.harness;
 
-import edu.upenn.zootester.ensemble.ZKProperty;
 import edu.upenn.zootester.ensemble.ZKRequest;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.Op;
@@ -51,8 +50,12 @@ public class Harness {
         return phases;
     }
 
-    public ZKProperty getConsistencyProperty(final Set<Integer> executedPhases,
-                                             final Set<Integer> maybeExecutedPhases) {
+    public int getNumKeys() {
+        return keys.size();
+    }
+
+    public SequentialConsistency getConsistencyProperty(final Set<Integer> executedPhases,
+                                                        final Set<Integer> maybeExecutedPhases) {
         return new SequentialConsistency(keys, getPossibleStates(executedPhases, maybeExecutedPhases));
     }
 
@@ -189,6 +192,56 @@ public class Harness {
         return new HarnessIterator(numKeys, numNodes, numRequests, numPhases);
     }
 
+    /***
+     * Encodes the harness as a single line of text without whitespace, so that it can be passed between
+     * processes or stored in files. {@link #decode(String)} turns the encoding back into an equivalent harness.
+     */
+    public String encode() {
+        final String encodedPhases = phases.stream()
+                .map(phase -> phase.fullMatch(
+                        emptyPhase -> "E",
+                        unconditionalWritePhase -> "U:" + unconditionalWritePhase.getNode() +
+                                ':' + unconditionalWritePhase.getWriteKey() +
+                                ':' + unconditionalWritePhase.getWriteValue(),
+                        conditionalWritePhase -> "C:" + conditionalWritePhase.getNode() +
+                                ':' + conditionalWritePhase.getReadKey() +
+                                ':' + conditionalWritePhase.getReadValue() +
+                                ':' + conditionalWritePhase.getWriteKey() +
+                                ':' + conditionalWritePhase.getWriteValue(),
+                        virtualWritePhase -> {
+                            throw new IllegalStateException("Virtual phases are not part of a harness");
+                        }))
+                .collect(Collectors.joining(";"));
+        return keys.size() + "|" + encodedPhases;
+    }
+
+    public static Harness decode(final String encoded) {
+        final String[] parts = encoded.split("\\|", 2);
+        final int numKeys = Integer.parseInt(parts[0]);
+        final List<Phase> phases = new ArrayList<>();
+        if (!parts[1].isEmpty()) {
+            for (final String encodedPhase : parts[1].split(";")) {
+                final String[] fields = encodedPhase.split(":");
+                switch (fields[0]) {
+                    case "E":
+                        phases.add(new EmptyPhase());
+                        break;
+                    case "U":
+                        phases.add(new UnconditionalWritePhase(Integer.parseInt(fields[1]),
+                                fields[2], Integer.parseInt(fields[3])));
+                        break;
+                    case "C":
+                        phases.add(new ConditionalWritePhase(Integer.parseInt(fields[1]),
+                                fields[2], Integer.parseInt(fields[3]), fields[4], Integer.parseInt(fields[5])));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown phase " + encodedPhase);
+                }
+            }
+        }
+        return new Harness(phases, numKeys);
+    }
+
     public static String keyMapper(final int key) {
         return "/key" + key;
     }
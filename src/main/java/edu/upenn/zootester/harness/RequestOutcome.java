@@ -0,0 +1,19 @@
+package edu.upenn.zootester.harness;
+
+/***
+ * How a request of a {@link RequestPhase} ended, as reported by its last callback.
+ */
+public enum RequestOutcome {
+    /***
+     * The request took effect, or, for a conditional write whose read didn't match, it had no effect by design
+     */
+    SUCCESS,
+    /***
+     * The request may or may not have taken effect, e.g., because the connection was lost
+     */
+    UNKNOWN,
+    /***
+     * The request certainly didn't take effect
+     */
+    NOT_EXECUTED
+}
@@ -5,11 +5,17 @@ import edu.upenn.zootester.util.ThrowingFunction;
 import org.apache.zookeeper.KeeperException;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 public interface RequestPhase extends Phase {
 
-    ZKRequest getRequest(Runnable onSuccess, Runnable onUnknown, Runnable cleanup);
+    /***
+     * Creates the request of this phase. Applying the request only issues it. The completion is completed with
+     * the outcome once the request's last callback fires, which the caller can wait on, bounded by a timeout,
+     * or compose with other requests.
+     */
+    ZKRequest getRequest(CompletableFuture<RequestOutcome> completion);
 
     int getNode();
 
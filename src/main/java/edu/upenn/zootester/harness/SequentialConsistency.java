@@ -20,6 +20,8 @@ public class SequentialConsistency implements ZKProperty {
     private final List<String> keys;
     private final Set<Map<String, Integer>> possibleStates;
 
+    private volatile List<Map<String, Integer>> observedStates = List.of();
+
     /**
      * The property retrieves the data associated with keys from zookeeper nodes, and checks that all nodes
      * are in the same state, and that this state is one of the possible final states under sequential consistency.
@@ -35,6 +37,7 @@ public class SequentialConsistency implements ZKProperty {
     @Override
     public boolean test(final List<ZooKeeper> clients, final List<Integer> clientForServer) {
         final List<Map<String, Integer>> states = retrieveStates(clients, clientForServer);
+        observedStates = states;
         final Map<String, Integer> first = states.get(0);
 
         // The first state is allowed
@@ -44,6 +47,13 @@ public class SequentialConsistency implements ZKProperty {
                 && states.subList(1, states.size()).stream().allMatch(first::equals);
     }
 
+    /***
+     * @return The states retrieved from the servers, indexed by server ID, by the last test of the property
+     */
+    public List<Map<String, Integer>> getObservedStates() {
+        return observedStates;
+    }
+
     private List<Map<String, Integer>> retrieveStates(final List<ZooKeeper> clients,
                                                       final List<Integer> clientForServer) {
         return IntStream.range(0, clientForServer.size()).mapToObj(
@@ -5,6 +5,7 @@ import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 public class UnconditionalWritePhase implements RequestPhase {
@@ -24,21 +25,17 @@ public class UnconditionalWritePhase implements RequestPhase {
     }
 
     @Override
-    public ZKRequest getRequest(final Runnable onSuccess, final Runnable onUnknown, final Runnable cleanup) {
+    public ZKRequest getRequest(final CompletableFuture<RequestOutcome> completion) {
         return (zk, serverId) -> {
             LOG.info("Request @ {}: Write {} -> {}", serverId, writeKey, writeValue);
             zk.setData(writeKey, rawWriteValue, -1, (sReturnCode, sKey, sCtx, sStat) -> {
                 if (KeeperException.Code.OK.intValue() == sReturnCode) {
-                    onSuccess.run();
+                    completion.complete(RequestOutcome.SUCCESS);
                 } else {
                     LOG.warn("zk.setData() returned {}", KeeperException.Code.get(sReturnCode));
-                    onUnknown.run();
+                    completion.complete(RequestOutcome.UNKNOWN);
                 }
-                cleanup.run();
             }, null);
-            Thread.sleep(100);
-//            System.gc();
-            LOG.info("Woke up!");
         };
     }
 
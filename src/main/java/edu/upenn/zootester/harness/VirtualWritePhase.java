@@ -2,6 +2,7 @@ package edu.upenn.zootester.harness;
 
 import edu.upenn.zootester.ensemble.ZKRequest;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -21,7 +22,7 @@ public class VirtualWritePhase implements RequestPhase {
     }
 
     @Override
-    public ZKRequest getRequest(final Runnable onSuccess, final Runnable onUnknown, final Runnable cleanup) {
+    public ZKRequest getRequest(final CompletableFuture<RequestOutcome> completion) {
         throw new UnsupportedOperationException("VirtualWritePhase doesn't provide an actual Zookeeper request.");
     }
 
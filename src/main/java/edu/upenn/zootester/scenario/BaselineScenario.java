@@ -1,9 +1,15 @@
 package edu.upenn.zootester.scenario;
 
+import edu.upenn.zootester.ensemble.EnsemblePool;
 import edu.upenn.zootester.ensemble.ZKEnsemble;
 import edu.upenn.zootester.ensemble.ZKProperty;
 import edu.upenn.zootester.harness.Harness;
 import edu.upenn.zootester.harness.Phase;
+import edu.upenn.zootester.harness.RequestOutcome;
+import edu.upenn.zootester.schedule.Clock;
+import edu.upenn.zootester.schedule.IntervalDistribution;
+import edu.upenn.zootester.trace.TraceArchive;
+import edu.upenn.zootester.trace.TraceRecorder;
 import edu.upenn.zootester.util.Assert;
 import edu.upenn.zootester.util.AssertionFailureError;
 import edu.upenn.zootester.util.Config;
@@ -14,22 +20,24 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-public class BaselineScenario implements Scenario {
+public class BaselineScenario implements HarnessScenario {
 
     private static final Logger LOG = LoggerFactory.getLogger(BaselineScenario.class);
-
-    private static final int TOTAL_SERVERS = 3;
-    private static final int QUORUM = 2;
+    private static final long OUTSTANDING_REQUESTS_TIMEOUT = 5_000;
 
     private final Random random = new Random();
-    private final ZKEnsemble zkEnsemble = new ZKEnsemble(TOTAL_SERVERS);
     private final Harness harness;
 
-    private int oustandingRequests;
+    private ZKEnsemble zkEnsemble;
+    private EnsemblePool ensemblePool;
+    private IntervalDistribution faultDistribution;
+    private Clock clock;
+    private TraceRecorder recorder = TraceRecorder.disabled();
 
     public BaselineScenario(final Harness harness) {
         this.harness = harness;
@@ -40,7 +48,14 @@ public class BaselineScenario implements Scenario {
     @Override
     public void init(Config config) throws IOException {
         this.config = config;
-        zkEnsemble.init();
+        this.faultDistribution = IntervalDistribution.forName(config.getFaultDistribution());
+        if (config.getStandby() > 0) {
+            ensemblePool = new EnsemblePool(config.getServers(), config.isProxied(), config.getStandby(),
+                    this::prepareEnsemble);
+        } else {
+            zkEnsemble = new ZKEnsemble(config.getServers(), config.isProxied());
+            zkEnsemble.init();
+        }
     }
 
     @Override
@@ -55,85 +70,150 @@ public class BaselineScenario implements Scenario {
             } else {
                 seed = random.nextLong();
             }
-            random.setSeed(seed);
             LOG.info("Starting execution {}: seed = {}", i, seed);
-            try {
-                singleExecution();
-            } catch (final Exception e) {
-                LOG.error("Exception while executing scenario", e);
-                ++failedOtherwise;
-            } catch (final AssertionFailureError e) {
-                LOG.error("Assertion failed", e);
+            final ExecutionOutcome outcome = execute(seed);
+            if (outcome == ExecutionOutcome.FAILED_ASSERTION) {
                 ++failedAssertions;
+            } else if (outcome == ExecutionOutcome.FAILED_OTHERWISE) {
+                ++failedOtherwise;
             }
             LOG.info("Finished execution {}: seed = {}", i, seed);
         }
 
         LOG.info("Finished executions: \tFailed assertions: {}\tFailed otherwise: {}\tTotal: {}",
                 failedAssertions, failedOtherwise, config.getExecutions());
-        zkEnsemble.tearDown();
+        tearDown();
     }
 
-    private void singleExecution() throws Exception {
-        try (final AutoCloseable cleanUp = zkEnsemble::stopEnsemble) {
-            zkEnsemble.startEnsemble();
+    @Override
+    public ExecutionOutcome execute(final long seed) {
+        random.setSeed(seed);
+        final ExecutionOutcome outcome = recordExecution();
+        if (recorder.isEnabled()) {
+            TraceArchive.archive(config, recorder.finish(outcome));
+            recorder = TraceRecorder.disabled();
+        }
+        return outcome;
+    }
+
+    private ExecutionOutcome recordExecution() {
+        try {
+            singleExecution();
+            return ExecutionOutcome.PASSED;
+        } catch (final Exception e) {
+            LOG.error("Exception while executing scenario", e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        } catch (final AssertionFailureError e) {
+            LOG.error("Assertion failed", e);
+            return ExecutionOutcome.FAILED_ASSERTION;
+        }
+    }
+
+    @Override
+    public Harness getHarness() {
+        return harness;
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        if (ensemblePool != null) {
+            ensemblePool.close();
+        } else {
+            zkEnsemble.tearDown();
+        }
+    }
+
+    /***
+     * Brings the ensemble into the state in which an execution starts, with the initial request applied and
+     * the clients open. All servers are running.
+     */
+    private void prepareEnsemble(final ZKEnsemble ensemble) throws Exception {
+        if (config.useCheckpoint()) {
+            // We start from the saved state right after the initial phase
+            if (!ensemble.hasCheckpoint()) {
+                ensemble.checkpoint(harness.getInitRequest());
+            }
+            ensemble.restoreEnsemble();
+            ensemble.startAllServers();
+        } else {
+            ensemble.startEnsemble();
 
             // We have an initial phase in which we create the znodes
-            final int leader = zkEnsemble.getLeader();
-            zkEnsemble.handleRequest(leader, harness.getInitRequest());
+            final int leader = ensemble.getLeader();
+            ensemble.handleRequest(leader, harness.getInitRequest());
+        }
+    }
+
+    private void releaseEnsemble() throws IOException, InterruptedException {
+        if (ensemblePool != null) {
+            ensemblePool.release(zkEnsemble);
+        } else {
+            zkEnsemble.stopEnsemble();
+        }
+    }
+
+    private void singleExecution() throws Exception {
+        if (ensemblePool != null) {
+            zkEnsemble = ensemblePool.acquire();
+        }
+        try (final AutoCloseable cleanUp = this::releaseEnsemble) {
+            if (ensemblePool == null) {
+                prepareEnsemble(zkEnsemble);
+            }
+
+            final Map<Integer, Boolean> executedPhases = new ConcurrentHashMap<>();
+            final Map<Integer, Boolean> maybeExecutedPhases = new ConcurrentHashMap<>();
+            final List<CompletableFuture<Void>> outstandingRequests = new ArrayList<>();
+            clock = Clock.forName(config.getClock(), () -> zkEnsemble.isQuiescent()
+                    && outstandingRequests.stream().allMatch(CompletableFuture::isDone));
+            final Clock executionClock = clock;
+            final long startTime = clock.now();
+            recorder = new TraceRecorder(harness.encode(), config.getServers(),
+                    () -> executionClock.now() - startTime);
+            // Executions of this scenario start with all servers running
+            recorder.start(zkEnsemble.getAllIds());
 
             final PriorityQueue<Event> events = new PriorityQueue<>(Comparator.comparingLong(Event::getTimestamp));
             final ListIterator<Phase> phaseIterator = harness.getPhases().listIterator();
             final int totalPhases = harness.getPhases().size();
 
-            // We'll try to execute the phases in 5 second intervals, and crashes in random intervals centered
-            // around 3 seconds (generated using Poisson distribution).
+            // We'll try to execute the phases in fixed intervals, and crash or restart servers in random
+            // intervals (by default, exponentially distributed as in a Poisson process).
             enqueueExecutePhase(events, phaseIterator);
             enqueueStartOrStop(events);
 
-            final Map<Integer, Boolean> executedPhases = new ConcurrentHashMap<>();
-            final Map<Integer, Boolean> maybeExecutedPhases = new ConcurrentHashMap<>();
-            final Semaphore allRequestsDone = new Semaphore(0);
-            oustandingRequests = 0;
-
-            // If the number of running servers drops to 0 (in general, QUORUM - 2), then
-            // after starting a single server, its client won't be able to connect to it,
-            // causing client reassignment and failure. Therefore, we batch the starts to
-            // always have a quorum when we're starting servers.
+            // If the number of running servers drops below QUORUM - 1, then after starting
+            // a single server, its client won't be able to connect to it, causing client
+            // reassignment and failure. Therefore, we batch the starts to always have a
+            // quorum when we're starting servers.
             final Set<Integer> startBatch = new HashSet<>();
 
             boolean done = false;
             while (!events.isEmpty() && !done) {
-                final long pause = events.peek().getTimestamp() - System.currentTimeMillis();
-                if (pause > 0) {
-                    try {
-                        Thread.sleep(pause);
-                    } catch (final InterruptedException e) {
-                        LOG.warn("Interrupted while waiting for the next event");
-                    }
-                } else {
-                    final Event event = events.remove();
-                    done = event.match(
-                            executePhase -> {
-                                enqueueExecutePhase(events, phaseIterator);
-                                oustandingRequests += executeExecutePhase(executePhase,
-                                        executedPhases, maybeExecutedPhases, allRequestsDone);
-                                return executePhase.getPhaseIndex() + 1 == totalPhases;
-                            },
-                            startOrStop -> {
-                                enqueueStartOrStop(events);
-                                executeStartOrStop(startOrStop, startBatch);
-                                return false;
-                            }
-                    );
-                }
+                clock.advanceTo(events.peek().getTimestamp());
+                final Event event = events.remove();
+                done = event.match(
+                        executePhase -> {
+                            enqueueExecutePhase(events, phaseIterator);
+                            executeExecutePhase(executePhase,
+                                    executedPhases, maybeExecutedPhases, outstandingRequests);
+                            return executePhase.getPhaseIndex() + 1 == totalPhases;
+                        },
+                        startOrStop -> {
+                            enqueueStartOrStop(events);
+                            executeStartOrStop(startOrStop, startBatch);
+                            return false;
+                        }
+                );
             }
 
             // Wait for all requests' callbacks to return, either with an OK or undetermined result
             try {
-                allRequestsDone.tryAcquire(oustandingRequests, 5, TimeUnit.SECONDS);
-            } catch (final InterruptedException e) {
-                LOG.warn("Not all requests are done after waiting for 5 s. Proceeding anyway...");
+                CompletableFuture.allOf(outstandingRequests.toArray(CompletableFuture<?>[]::new))
+                        .get(OUTSTANDING_REQUESTS_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException e) {
+                LOG.warn("Not all requests are done after waiting for {} ms. Proceeding anyway...",
+                        OUTSTANDING_REQUESTS_TIMEOUT);
             }
 
             zkEnsemble.startAllServers();
@@ -146,7 +226,7 @@ public class BaselineScenario implements Scenario {
     }
 
     private ExecutePhase getExecutePhase(final int phaseIndex, final Phase phase) {
-        final long timestamp = System.currentTimeMillis() + 5_000;
+        final long timestamp = clock.now() + config.getPhaseInterval();
         return new ExecutePhase(phaseIndex, phase, timestamp);
     }
 
@@ -158,44 +238,44 @@ public class BaselineScenario implements Scenario {
         }
     }
 
-    private int executeExecutePhase(final ExecutePhase executePhase,
-                                    final Map<Integer, Boolean> executedPhases,
-                                    final Map<Integer, Boolean> maybeExecutedPhases,
-                                    final Semaphore requestsDone)
+    private void executeExecutePhase(final ExecutePhase executePhase,
+                                     final Map<Integer, Boolean> executedPhases,
+                                     final Map<Integer, Boolean> maybeExecutedPhases,
+                                     final List<CompletableFuture<Void>> outstandingRequests)
             throws InterruptedException, IOException, KeeperException {
         LOG.info("Executing {}", executePhase);
         final int phaseIndex = executePhase.getPhaseIndex();
         final Phase phase = executePhase.getPhase();
-        return phase.throwingMatch(
-                empty -> 0,
+        phase.throwingMatch(
+                empty -> null,
                 requestPhase -> {
                     if (zkEnsemble.isRunning(requestPhase.getNode())) {
-                        zkEnsemble.handleRequest(requestPhase.getNode(),
-                                requestPhase.getRequest(
-                                        // On success, add to the map of executed phases
-                                        () -> {
-                                            LOG.info("Phase {} request completed", phaseIndex);
-                                            executedPhases.put(phaseIndex, true);
-                                        },
-                                        // On undetermined result, add to the map of maybe executed phases
-                                        () -> {
-                                            LOG.warn("Phase {} request undetermined", phaseIndex);
-                                            maybeExecutedPhases.put(phaseIndex, true);
-                                        },
-                                        // As a cleanup, release the requestDone semaphore
-                                        () -> requestsDone.release())
-                        );
-                        return 1;
+                        // Requests are pipelined: we don't wait for the completion here, but before checking
+                        // the final state
+                        final CompletableFuture<RequestOutcome> completion = new CompletableFuture<>();
+                        outstandingRequests.add(completion.thenAccept(outcome -> {
+                            recorder.outcome(phaseIndex, outcome);
+                            if (outcome == RequestOutcome.SUCCESS) {
+                                // On success, add to the map of executed phases
+                                LOG.info("Phase {} request completed", phaseIndex);
+                                executedPhases.put(phaseIndex, true);
+                            } else if (outcome == RequestOutcome.UNKNOWN) {
+                                // On undetermined result, add to the map of maybe executed phases
+                                LOG.warn("Phase {} request undetermined", phaseIndex);
+                                maybeExecutedPhases.put(phaseIndex, true);
+                            }
+                        }));
+                        recorder.request(phaseIndex, false);
+                        zkEnsemble.handleRequest(requestPhase.getNode(), requestPhase.getRequest(completion));
                     }
-                    return 0;
+                    return null;
                 }
         );
     }
 
     private StartOrStop getStartOrStop() {
-        final int serverId = random.nextInt(TOTAL_SERVERS);
-        // Samples a Poisson interval with the parameter lambda = 1/3000
-        final long timestamp = System.currentTimeMillis() - (long) (2_000.0 * Math.log(1.0 - random.nextDouble()));
+        final int serverId = random.nextInt(zkEnsemble.getTotalNodes());
+        final long timestamp = clock.now() + faultDistribution.sample(random, config.getFaultMean());
         return new StartOrStop(serverId, timestamp);
     }
 
@@ -211,17 +291,16 @@ public class BaselineScenario implements Scenario {
         final int serverId = startOrStop.getServerId();
         if (zkEnsemble.isRunning(serverId)) {
             // We crash -- we don't care to wait for the clients to realize they're disconnected
+            recorder.crash(List.of(serverId));
             zkEnsemble.crashServers(List.of(serverId));
         } else {
-            if (zkEnsemble.totalRunningServers() < QUORUM - 1) {
-                startBatch.add(serverId);
+            startBatch.add(serverId);
+            if (zkEnsemble.totalRunningServers() + startBatch.size() < zkEnsemble.getQuorumSize()) {
                 LOG.info("Too few servers are running. Adding {} to the start batch, which is now {}", serverId, startBatch);
-                if (startBatch.size() >= QUORUM) {
-                    zkEnsemble.startServers(new ArrayList<>(startBatch));
-                    startBatch.clear();
-                }
             } else {
-                zkEnsemble.startServers(List.of(serverId));
+                recorder.start(new ArrayList<>(startBatch));
+                zkEnsemble.startServers(new ArrayList<>(startBatch));
+                startBatch.clear();
             }
         }
     }
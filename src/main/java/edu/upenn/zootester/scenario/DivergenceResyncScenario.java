@@ -14,12 +14,16 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class DivergenceResyncScenario implements Scenario {
 
     private static final Logger LOG = LoggerFactory.getLogger(DivergenceResyncScenario.class);
 
     private static final int TOTAL_SERVERS = 3;
+    private static final long LEADER_TIMEOUT = 10_000;
+    // A write without a quorum never completes, but the leader logs it within this time
+    private static final long WRITE_TIMEOUT = 500;
     private static final List<String> KEYS = List.of("/key0", "/key1");
     private static final ZKProperty CONSISTENT_VALUES = new SequentialConsistency(KEYS,
             Set.of(Map.of("/key0", 0, "/key1", 1001),
@@ -40,12 +44,12 @@ public class DivergenceResyncScenario implements Scenario {
         }) {
             zkEnsemble.startEnsemble();
 
-            final int srvC = zkEnsemble.getLeader();
+            final int srvC = zkEnsemble.waitForLeader(LEADER_TIMEOUT);
+            // waitForLeader returns -1 on timeout, which would silently pick the wrong servers for A and B
+            Assert.assertTrue("There should be a leader within " + LEADER_TIMEOUT + " ms", srvC >= 0);
             final int srvA = (srvC + 1) % TOTAL_SERVERS;
             final int srvB = (srvC + 2) % TOTAL_SERVERS;
 
-            Assert.assertTrue("There should be a leader", srvC >= 0);
-
             // Create initial znodes
             zkEnsemble.handleRequest(srvC, (zk, serverId) -> {
                 zk.create(KEYS.get(0), "0".getBytes(), Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
@@ -55,41 +59,37 @@ public class DivergenceResyncScenario implements Scenario {
 
             // Resync A and B
             zkEnsemble.startServers(List.of(srvA, srvB));
-            Assert.assertTrue("Server B should be the leader", zkEnsemble.getLeader() == srvB);
+            Assert.assertTrue("Server B should be the leader", zkEnsemble.waitForLeader(srvB, LEADER_TIMEOUT));
 
             // Divergence
             zkEnsemble.crashServers(List.of(srvA));
-            zkEnsemble.handleRequest(srvB, (zk, serverId) -> {
-                zk.setData(KEYS.get(0), "1000".getBytes(), -1, null, null);
-                Thread.sleep(500);
-//                System.gc();
-            });
+            final CompletableFuture<Integer> divergentWrite1 = new CompletableFuture<>();
+            zkEnsemble.handleRequest(srvB, (zk, serverId) -> zk.setData(KEYS.get(0), "1000".getBytes(), -1,
+                    (rc, path, ctx, stat) -> divergentWrite1.complete(rc), null), divergentWrite1, WRITE_TIMEOUT);
             zkEnsemble.stopServers(List.of(srvA, srvB));
 
             // Start and stop A and C
             zkEnsemble.startServers(List.of(srvA, srvC));
-            Assert.assertTrue("Server A should be the leader", zkEnsemble.getLeader() == srvA);
+            Assert.assertTrue("Server A should be the leader", zkEnsemble.waitForLeader(srvA, LEADER_TIMEOUT));
             zkEnsemble.stopServers(List.of(srvA, srvC));
 
             // Resync B and C
             zkEnsemble.startServers(List.of(srvB, srvC));
-            Assert.assertTrue("Server C should be the leader", zkEnsemble.getLeader() == srvC);
+            Assert.assertTrue("Server C should be the leader", zkEnsemble.waitForLeader(srvC, LEADER_TIMEOUT));
 
             // Divergence
-            zkEnsemble.handleRequest(srvC, (zk, serverId) -> {
-                zk.setData(KEYS.get(1), "1001".getBytes(), -1, null, null);
-                Thread.sleep(500);
-//                System.gc();
-            });
+            final CompletableFuture<Integer> divergentWrite2 = new CompletableFuture<>();
+            zkEnsemble.handleRequest(srvC, (zk, serverId) -> zk.setData(KEYS.get(1), "1001".getBytes(), -1,
+                    (rc, path, ctx, stat) -> divergentWrite2.complete(rc), null), divergentWrite2, WRITE_TIMEOUT);
             zkEnsemble.stopServers(List.of(srvB, srvC));
 
             // Resync B and C
             zkEnsemble.startServers(List.of(srvB, srvC));
-            Assert.assertTrue("Server C should be the leader", zkEnsemble.getLeader() == srvC);
+            Assert.assertTrue("Server C should be the leader", zkEnsemble.waitForLeader(srvC, LEADER_TIMEOUT));
 
             // Start A
             zkEnsemble.startServers(List.of(srvA));
-            Assert.assertTrue("Server C should be the leader", zkEnsemble.getLeader() == srvC);
+            Assert.assertTrue("Server C should be the leader", zkEnsemble.waitForLeader(srvC, LEADER_TIMEOUT));
 
             final boolean result = zkEnsemble.checkProperty(CONSISTENT_VALUES);
             Assert.assertTrue("All keys on all servers should have the same value", result);
@@ -0,0 +1,5 @@
+package edu.upenn.zootester.scenario;
+
+public enum ExecutionOutcome {
+    PASSED, FAILED_ASSERTION, FAILED_OTHERWISE, SKIPPED
+}
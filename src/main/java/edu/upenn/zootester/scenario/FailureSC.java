@@ -6,6 +6,7 @@ import edu.upenn.zootester.harness.ConditionalWritePhase;
 import edu.upenn.zootester.harness.EmptyPhase;
 import edu.upenn.zootester.harness.Harness;
 import edu.upenn.zootester.harness.Phase;
+import edu.upenn.zootester.harness.RequestOutcome;
 import edu.upenn.zootester.util.Assert;
 import edu.upenn.zootester.util.Config;
 import org.slf4j.Logger;
@@ -15,12 +16,14 @@ import java.io.IOException;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class FailureSC implements Scenario {
 
     private static final Logger LOG = LoggerFactory.getLogger(FailureSC.class);
     private static final int TOTAL_SERVERS = 3;
+    private static final long REQUEST_TIMEOUT = 1_000;
 
     private final ZKEnsemble zkEnsemble = new ZKEnsemble(TOTAL_SERVERS);
 
@@ -59,11 +62,16 @@ public class FailureSC implements Scenario {
             phase1.throwingMatch(
                     ignore -> null,
                     requestPhase -> {
-                        zkEnsemble.handleRequest(requestPhase.getNode(), requestPhase.getRequest(
-                                () -> executedPhases.put(phaseIndex1, true),
-                                () -> maybeExecutedPhases.put(phaseIndex1, true),
-                                () -> {
-                                }));
+                        final CompletableFuture<RequestOutcome> completion = new CompletableFuture<>();
+                        final CompletableFuture<Void> recorded = completion.thenAccept(outcome -> {
+                            if (outcome == RequestOutcome.SUCCESS) {
+                                executedPhases.put(phaseIndex1, true);
+                            } else if (outcome == RequestOutcome.UNKNOWN) {
+                                maybeExecutedPhases.put(phaseIndex1, true);
+                            }
+                        });
+                        zkEnsemble.handleRequest(requestPhase.getNode(), requestPhase.getRequest(completion),
+                                recorded, REQUEST_TIMEOUT);
                         return null;
                     }
             );
@@ -80,11 +88,16 @@ public class FailureSC implements Scenario {
             phase3.throwingMatch(
                     ignore -> null,
                     requestPhase -> {
-                        zkEnsemble.handleRequest(requestPhase.getNode(), requestPhase.getRequest(
-                                () -> executedPhases.put(phaseIndex3, true),
-                                () -> maybeExecutedPhases.put(phaseIndex3, true),
-                                () -> {
-                                }));
+                        final CompletableFuture<RequestOutcome> completion = new CompletableFuture<>();
+                        final CompletableFuture<Void> recorded = completion.thenAccept(outcome -> {
+                            if (outcome == RequestOutcome.SUCCESS) {
+                                executedPhases.put(phaseIndex3, true);
+                            } else if (outcome == RequestOutcome.UNKNOWN) {
+                                maybeExecutedPhases.put(phaseIndex3, true);
+                            }
+                        });
+                        zkEnsemble.handleRequest(requestPhase.getNode(), requestPhase.getRequest(completion),
+                                recorded, REQUEST_TIMEOUT);
                         return null;
                     }
             );
@@ -96,11 +109,16 @@ public class FailureSC implements Scenario {
             phase4.throwingMatch(
                     ignore -> null,
                     requestPhase -> {
-                        zkEnsemble.handleRequest(requestPhase.getNode(), requestPhase.getRequest(
-                                () -> executedPhases.put(phaseIndex4, true),
-                                () -> maybeExecutedPhases.put(phaseIndex4, true),
-                                () -> {
-                                }));
+                        final CompletableFuture<RequestOutcome> completion = new CompletableFuture<>();
+                        final CompletableFuture<Void> recorded = completion.thenAccept(outcome -> {
+                            if (outcome == RequestOutcome.SUCCESS) {
+                                executedPhases.put(phaseIndex4, true);
+                            } else if (outcome == RequestOutcome.UNKNOWN) {
+                                maybeExecutedPhases.put(phaseIndex4, true);
+                            }
+                        });
+                        zkEnsemble.handleRequest(requestPhase.getNode(), requestPhase.getRequest(completion),
+                                recorded, REQUEST_TIMEOUT);
                         return null;
                     }
             );
@@ -0,0 +1,58 @@
+package edu.upenn.zootester.scenario;
+
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.util.Config;
+
+import java.io.IOException;
+
+/***
+ * A scenario that runs executions of a single harness on its own ensemble. Besides running
+ * config.getExecutions() executions through {@link #execute()}, it can run individual executions,
+ * which lets a caller decide which seeds to run and when.
+ */
+public interface HarnessScenario extends Scenario {
+
+    /***
+     * Runs a single execution whose random choices are determined by the seed.
+     */
+    ExecutionOutcome execute(long seed);
+
+    Harness getHarness();
+
+    /***
+     * Releases the resources of the scenario's ensemble. Called once no more executions will be run.
+     */
+    void tearDown() throws IOException;
+
+    /***
+     * Creates the harness scenario that the scenario with the given name uses to run executions of a harness.
+     */
+    static HarnessScenario forName(final String scenario, final Harness harness) {
+        switch (scenario) {
+            case "random":
+                return new RandomScenario(harness);
+            case "paper":
+            case "interesting":
+            case "harness":
+                return new TrueToThePaperScenario(harness);
+            case "baseline":
+            case "baseline-harness-short":
+            case "baseline-harness-long":
+            case "baseline-interesting":
+                return new BaselineScenario(harness);
+            default:
+                throw new IllegalArgumentException("No harness scenario for " + scenario);
+        }
+    }
+
+    /***
+     * Creates the harness scenario that runs the executions of the configured scenario. Shrinking runs its
+     * candidates on config.getShrinkScenario(), the scenario whose execution failed, since the scenarios give
+     * the same fault schedule different meanings.
+     */
+    static HarnessScenario forConfig(final Config config, final Harness harness) {
+        final String scenario = config.getScenario().equals("shrink") ? config.getShrinkScenario()
+                : config.getScenario();
+        return forName(scenario, harness);
+    }
+}
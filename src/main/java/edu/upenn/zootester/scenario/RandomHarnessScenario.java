@@ -1,9 +1,9 @@
 package edu.upenn.zootester.scenario;
 
-import edu.upenn.zootester.ensemble.ZKHelper;
 import edu.upenn.zootester.harness.Harness;
 import edu.upenn.zootester.harness.RandomHarnessGenerator;
 import edu.upenn.zootester.util.Config;
+import edu.upenn.zootester.worker.CampaignExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,39 +33,15 @@ public class RandomHarnessScenario implements Scenario {
         random.setSeed(seed);
         LOG.info("Initialized random number generator: seed = {}", seed);
 
-        harnessGenerator = new RandomHarnessGenerator(2, 3, config.getRequests(), config.getPhases(), random);
+        harnessGenerator = new RandomHarnessGenerator(2, config.getServers(), config.getRequests(), config.getPhases(), random);
     }
 
     @Override
-    public void execute() {
+    public void execute() throws Exception {
+        final List<Harness> harnesses = new ArrayList<>();
         for (int i = 0; i < config.getHarnesses(); ++i) {
-            final Harness harness = harnessGenerator.next();
-            LOG.info("Starting execution with {}", harness.toString());
-
-            // Reset unique port counter to reuse the port numbers over executions
-            ZKHelper.setBasePort(config.getBasePort());
-
-            final List<Thread> threads = new ArrayList<>();
-            for (int j = 0; j < config.getThreads(); ++j) {
-                final Thread thread = new Thread(() -> {
-                    try {
-                        final Scenario scenario = new TrueToThePaperScenario(harness);
-                        scenario.init(config);
-                        scenario.execute();
-                    } catch (final Exception e) {
-                        LOG.error("Exception while executing scenario", e);
-                    }
-                });
-                threads.add(thread);
-                thread.start();
-            }
-            for (final var thread : threads) {
-                try {
-                    thread.join();
-                } catch (final InterruptedException e) {
-                    LOG.info("Interrupted from waiting on {}", thread.getName());
-                }
-            }
+            harnesses.add(harnessGenerator.next());
         }
+        new CampaignExecutor(config, harnesses).execute();
     }
 }
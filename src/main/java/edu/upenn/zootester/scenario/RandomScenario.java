@@ -1,15 +1,23 @@
 package edu.upenn.zootester.scenario;
 
+import edu.upenn.zootester.ensemble.EnsemblePool;
 import edu.upenn.zootester.ensemble.ZKEnsemble;
-import edu.upenn.zootester.ensemble.ZKProperty;
 import edu.upenn.zootester.fault.ExactFaultGenerator;
 import edu.upenn.zootester.fault.FaultGenerator;
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.fault.PhaseFaults;
 import edu.upenn.zootester.harness.EmptyPhase;
 import edu.upenn.zootester.harness.Harness;
 import edu.upenn.zootester.harness.Phase;
+import edu.upenn.zootester.harness.RequestOutcome;
+import edu.upenn.zootester.harness.SequentialConsistency;
 import edu.upenn.zootester.harness.UnconditionalWritePhase;
+import edu.upenn.zootester.guide.ExploredSchedules;
+import edu.upenn.zootester.guide.NoveltyGuide;
 import edu.upenn.zootester.subset.MinimalQuorumGenerator;
 import edu.upenn.zootester.subset.RandomSubsetGenerator;
+import edu.upenn.zootester.trace.TraceArchive;
+import edu.upenn.zootester.trace.TraceRecorder;
 import edu.upenn.zootester.util.Assert;
 import edu.upenn.zootester.util.AssertionFailureError;
 import edu.upenn.zootester.util.Config;
@@ -17,28 +25,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
-public class RandomScenario implements Scenario {
+public class RandomScenario implements ScheduleScenario {
 
     private static final Logger LOG = LoggerFactory.getLogger(RandomScenario.class);
 
-    private static final int TOTAL_SERVERS = 3;
-    private static final int QUORUM_SIZE = 2;
-
     private final Random random = new Random();
-    private final ZKEnsemble zkEnsemble = new ZKEnsemble(TOTAL_SERVERS);
     private final Harness harness;
 
+    private ZKEnsemble zkEnsemble;
+    private EnsemblePool ensemblePool;
     private Config config;
     private MinimalQuorumGenerator quorumGenerator;
     private RandomSubsetGenerator subsetGenerator;
     private FaultGenerator faultGenerator;
+    private NoveltyGuide guide;
+    private ExploredSchedules explored;
 
     public RandomScenario(final Harness harness) {
         this.harness = harness;
@@ -59,11 +70,24 @@ public class RandomScenario implements Scenario {
     @Override
     public void init(final Config config) throws IOException {
         this.config = config;
-        this.quorumGenerator = new MinimalQuorumGenerator(TOTAL_SERVERS, random);
+        this.quorumGenerator = new MinimalQuorumGenerator(config.getServers(), random);
         this.subsetGenerator = new RandomSubsetGenerator(random);
-        this.faultGenerator = new ExactFaultGenerator(config.getPhases(), QUORUM_SIZE - 1,
+        // At most a minority of the servers, i.e., one less than a quorum, crash in a phase
+        this.faultGenerator = new ExactFaultGenerator(config.getPhases(), config.getServers() / 2,
                 config.getFaults(), random);
-        zkEnsemble.init();
+        if (config.isGuided()) {
+            this.guide = NoveltyGuide.forHarness(harness.encode());
+        }
+        if (config.getExplored() != null) {
+            this.explored = ExploredSchedules.open(Path.of(config.getExplored()));
+        }
+        if (config.getStandby() > 0) {
+            ensemblePool = new EnsemblePool(config.getServers(), config.isProxied(), config.getStandby(),
+                    this::prepareEnsemble);
+        } else {
+            zkEnsemble = new ZKEnsemble(config.getServers(), config.isProxied());
+            zkEnsemble.init();
+        }
     }
 
     @Override
@@ -78,86 +102,236 @@ public class RandomScenario implements Scenario {
             } else {
                 seed = random.nextLong();
             }
-            random.setSeed(seed);
             LOG.info("Starting execution {}: seed = {}", i, seed);
-            try {
-                singleExecution();
-            } catch (final Exception e) {
-                LOG.error("Exception while executing scenario", e);
-                ++failedOtherwise;
-            } catch (final AssertionFailureError e) {
-                LOG.error("Assertion failed", e);
+            final ExecutionOutcome outcome = execute(seed);
+            if (outcome == ExecutionOutcome.FAILED_ASSERTION) {
                 ++failedAssertions;
+            } else if (outcome == ExecutionOutcome.FAILED_OTHERWISE) {
+                ++failedOtherwise;
             }
             LOG.info("Finished execution {}: seed = {}", i, seed);
         }
 
         LOG.info("Finished executions:\n\tFailed assertions: {}\tFailed otherwise: {}\tTotal: {}",
                 failedAssertions, failedOtherwise, config.getExecutions());
-        zkEnsemble.tearDown();
+        tearDown();
     }
 
-    private void singleExecution() throws Exception {
-        try (final AutoCloseable cleanUp = () -> {
-            zkEnsemble.stopEnsemble();
-            faultGenerator.reset();
-        }) {
-            zkEnsemble.startEnsemble();
+    @Override
+    public ExecutionOutcome execute(final long seed) {
+        random.setSeed(seed);
+        final FaultSchedule schedule;
+        try {
+            schedule = claimFaultSchedule();
+        } catch (final IOException e) {
+            LOG.error("Exception while choosing the fault schedule", e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        }
+        if (schedule == null) {
+            LOG.info("Skipping execution, all sampled fault schedules have been explored before");
+            return ExecutionOutcome.SKIPPED;
+        }
+        final ExecutionOutcome outcome = execute(schedule);
+        if (explored != null && schedule != null) {
+            try {
+                explored.finish(harness.encode(), schedule, outcome);
+            } catch (final IOException e) {
+                LOG.error("Couldn't record the explored schedule", e);
+            }
+        }
+        return outcome;
+    }
+
+    @Override
+    public ExecutionOutcome execute(final FaultSchedule schedule) {
+        // The phases don't wait on a clock, so all steps are recorded at time 0
+        final TraceRecorder recorder = new TraceRecorder(harness.encode(), config.getServers(), () -> 0);
+        final ExecutionOutcome outcome = recordExecution(schedule, recorder);
+        TraceArchive.archive(config, recorder.finish(outcome));
+        return outcome;
+    }
+
+    private ExecutionOutcome recordExecution(final FaultSchedule schedule, final TraceRecorder recorder) {
+        try {
+            singleExecution(schedule, recorder);
+            return ExecutionOutcome.PASSED;
+        } catch (final Exception e) {
+            LOG.error("Exception while executing scenario", e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        } catch (final AssertionFailureError e) {
+            LOG.error("Assertion failed", e);
+            LOG.info("Failing execution: --shrinkScenario random --harness '{}' --schedule '{}'",
+                    harness.encode(), schedule.encode());
+            return ExecutionOutcome.FAILED_ASSERTION;
+        }
+    }
+
+    @Override
+    public Harness getHarness() {
+        return harness;
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        if (ensemblePool != null) {
+            ensemblePool.close();
+        } else {
+            zkEnsemble.tearDown();
+        }
+    }
+
+    /***
+     * Brings the ensemble into the state in which an execution starts, with the initial request applied and
+     * the clients open. All servers are stopped.
+     */
+    private void prepareEnsemble(final ZKEnsemble ensemble) throws Exception {
+        if (config.useCheckpoint()) {
+            // We start from the saved state right after the initial phase
+            if (!ensemble.hasCheckpoint()) {
+                ensemble.checkpoint(harness.getInitRequest());
+            }
+            ensemble.restoreEnsemble();
+        } else {
+            ensemble.startEnsemble();
 
             // We have an initial phase in which we create the znodes
-            final int leader = zkEnsemble.getLeader();
-            zkEnsemble.handleRequest(leader, harness.getInitRequest());
-            zkEnsemble.stopAllServers();
+            final int leader = ensemble.getLeader();
+            ensemble.handleRequest(leader, harness.getInitRequest());
+            ensemble.stopAllServers();
+        }
+    }
+
+    private void releaseEnsemble() throws IOException, InterruptedException {
+        if (ensemblePool != null) {
+            ensemblePool.release(zkEnsemble);
+        } else {
+            zkEnsemble.stopEnsemble();
+        }
+    }
+
+    private void singleExecution(final FaultSchedule schedule, final TraceRecorder recorder) throws Exception {
+        if (ensemblePool != null) {
+            zkEnsemble = ensemblePool.acquire();
+        }
+        try (final AutoCloseable cleanUp = this::releaseEnsemble) {
+            if (ensemblePool == null) {
+                prepareEnsemble(zkEnsemble);
+            }
 
             final Map<Integer, Boolean> executedPhases = new ConcurrentHashMap<>();
             final Map<Integer, Boolean> maybeExecutedPhases = new ConcurrentHashMap<>();
+            LOG.info("Executing {}", schedule);
             final ListIterator<Phase> it = harness.getPhases().listIterator();
             while (it.hasNext()) {
                 final int phaseIndex = it.nextIndex();
                 final Phase phase = it.next();
-                final List<Integer> serversToStart = quorumGenerator.generate();
+                final PhaseFaults phaseFaults = schedule.get(phaseIndex);
+                final List<Integer> serversToStart = new ArrayList<>();
+                for (int j = 0; j < config.getServers(); ++j) {
+                    if (!phaseFaults.getServersToCrash().contains(j)
+                            || phaseFaults.getServersToCrashLater().contains(j)) {
+                        serversToStart.add(j);
+                    }
+                }
+                recorder.start(serversToStart);
                 zkEnsemble.startServers(serversToStart);
-
-                final int faults = faultGenerator.generate();
-                final List<Integer> serversToCrash = subsetGenerator.generate(serversToStart.size(), faults).stream()
-                        .map(serversToStart::get).collect(Collectors.toList());
-                zkEnsemble.crashServers(serversToCrash);
-                final List<Integer> serversStillRunning = serversToStart.stream()
-                        .filter(i -> !serversToCrash.contains(i)).collect(Collectors.toList());
+                recorder.crash(phaseFaults.getServersToCrashLater());
+                zkEnsemble.crashServers(phaseFaults.getServersToCrashLater());
 
                 phase.throwingMatch(
                         empty -> null,
                         request -> {
-                            if (serversStillRunning.contains(request.getNode())) {
+                            if (!phaseFaults.getServersToCrash().contains(request.getNode())) {
                                 LOG.info("Initiating request for {}", request);
-                                zkEnsemble.handleRequest(request.getNode(), request.getRequest(
+                                final CompletableFuture<RequestOutcome> completion = new CompletableFuture<>();
+                                final CompletableFuture<Void> recorded = completion.thenAccept(outcome -> {
+                                    recorder.outcome(phaseIndex, outcome);
+                                    if (outcome == RequestOutcome.SUCCESS) {
                                         // If successful, add to the map of executed phases
-                                        () -> {
-                                            LOG.info("Phase {} request completed", phaseIndex);
-                                            executedPhases.put(phaseIndex, true);
-                                        },
+                                        LOG.info("Phase {} request completed", phaseIndex);
+                                        executedPhases.put(phaseIndex, true);
+                                    } else if (outcome == RequestOutcome.UNKNOWN) {
                                         // On undetermined result, add to the map of maybe executed phases
-                                        () -> {
-                                            LOG.info("Phase {} request undetermined", phaseIndex);
-                                            maybeExecutedPhases.put(phaseIndex, true);
-                                        },
-                                        // No cleanup here
-                                        () -> {
-                                        }
-                                ));
+                                        LOG.info("Phase {} request undetermined", phaseIndex);
+                                        maybeExecutedPhases.put(phaseIndex, true);
+                                    }
+                                });
+                                recorder.request(phaseIndex, true);
+                                zkEnsemble.handleRequest(request.getNode(), request.getRequest(completion),
+                                        recorded, config.getRequestTimeout());
                             }
                             return null;
                         }
                 );
+                recorder.stop(serversToStart);
                 zkEnsemble.stopServers(serversToStart);
             }
 
             zkEnsemble.startAllServers();
-            final ZKProperty property =
+            final SequentialConsistency property =
                     harness.getConsistencyProperty(executedPhases.keySet(), maybeExecutedPhases.keySet());
             final boolean result = zkEnsemble.checkProperty(property);
+            if (guide != null) {
+                guide.record(schedule, NoveltyGuide.fingerprint(executedPhases.keySet(),
+                        maybeExecutedPhases.keySet(), property.getObservedStates(), zkEnsemble.getLeaderHistory()));
+            }
             Assert.assertTrue("All servers should be in the same state" +
                     ", and the state should be allowed under sequential consistency", result);
         }
     }
+
+    /***
+     * Generates the faults of all phases up front. In the schedule, the servers to crash in a phase are those
+     * that aren't running when the phase's request is issued, i.e., those outside the minimal quorum that is
+     * started, and those that are started and then crashed, which are the servers to crash later.
+     */
+    private FaultSchedule generateFaultSchedule() {
+        faultGenerator.reset();
+        final List<PhaseFaults> phaseFaults = new ArrayList<>();
+        for (int i = 0; i < harness.getPhases().size(); ++i) {
+            final List<Integer> serversToStart = quorumGenerator.generate();
+            final int faults = faultGenerator.generate();
+            final List<Integer> serversToCrashLater = subsetGenerator.generate(serversToStart.size(), faults).stream()
+                    .map(serversToStart::get).sorted().collect(Collectors.toList());
+            final List<Integer> serversToCrash = new ArrayList<>();
+            for (int j = 0; j < config.getServers(); ++j) {
+                if (!serversToStart.contains(j) || serversToCrashLater.contains(j)) {
+                    serversToCrash.add(j);
+                }
+            }
+            phaseFaults.add(new PhaseFaults(serversToCrash, serversToCrashLater));
+        }
+        return new FaultSchedule(phaseFaults);
+    }
+
+    /***
+     * Chooses the fault schedule of an execution and claims it in the explored set. Schedules that were explored
+     * before are resampled.
+     *
+     * @return The schedule, or null if no unexplored schedule was found
+     */
+    private FaultSchedule claimFaultSchedule() throws IOException {
+        FaultSchedule schedule = chooseFaultSchedule();
+        if (explored == null) {
+            return schedule;
+        }
+        for (int i = 0; !explored.claim(harness.encode(), schedule); ++i) {
+            if (i == ExploredSchedules.MAX_RESAMPLES) {
+                return null;
+            }
+            schedule = chooseFaultSchedule();
+        }
+        return schedule;
+    }
+
+    private FaultSchedule chooseFaultSchedule() {
+        if (guide == null) {
+            return generateFaultSchedule();
+        }
+        final List<FaultSchedule> candidates = new ArrayList<>();
+        for (int i = 0; i < NoveltyGuide.CANDIDATES; ++i) {
+            candidates.add(generateFaultSchedule());
+        }
+        return guide.choose(candidates, random);
+    }
 }
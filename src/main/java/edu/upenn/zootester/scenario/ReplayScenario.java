@@ -0,0 +1,28 @@
+package edu.upenn.zootester.scenario;
+
+import edu.upenn.zootester.util.Config;
+import edu.upenn.zootester.worker.CampaignExecutor;
+
+import java.util.List;
+
+/***
+ * Replays the traces of config.getCorpus(), a single trace file or a directory of them, e.g., as saved with
+ * --traces or collected from failing executions, and reports how many of them still fail.
+ */
+public class ReplayScenario implements Scenario {
+
+    private Config config;
+
+    @Override
+    public void init(final Config config) {
+        this.config = config;
+        if (config.getCorpus() == null) {
+            throw new IllegalArgumentException("Replaying needs the --corpus of traces to replay");
+        }
+    }
+
+    @Override
+    public void execute() throws Exception {
+        new CampaignExecutor(config, List.of()).execute();
+    }
+}
@@ -0,0 +1,15 @@
+package edu.upenn.zootester.scenario;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+
+/***
+ * A harness scenario whose executions are determined by their fault schedules, so that an execution can be
+ * repeated, or varied, by running a given schedule instead of one chosen at random.
+ */
+public interface ScheduleScenario extends HarnessScenario {
+
+    /***
+     * Runs a single execution with the given fault schedule, which has one entry per phase of the harness.
+     */
+    ExecutionOutcome execute(FaultSchedule schedule);
+}
@@ -0,0 +1,44 @@
+package edu.upenn.zootester.scenario;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.util.Config;
+import edu.upenn.zootester.worker.Shrinker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * Shrinks the failing execution given by config.getHarness() and config.getSchedule(), e.g., as logged by
+ * {@link TrueToThePaperScenario} when an assertion fails, and logs the smallest failing execution found. The
+ * candidates are run on config.getShrinkScenario(), which should be the scenario that logged the failure, e.g.,
+ * random for executions of {@link RandomScenario}.
+ */
+public class ShrinkScenario implements Scenario {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShrinkScenario.class);
+
+    private Config config;
+    private Harness harness;
+    private FaultSchedule schedule;
+
+    @Override
+    public void init(final Config config) {
+        this.config = config;
+        if (config.getHarness() == null || config.getSchedule() == null) {
+            throw new IllegalArgumentException("Shrinking needs the --harness and the --schedule to shrink");
+        }
+        this.harness = Harness.decode(config.getHarness());
+        this.schedule = FaultSchedule.decode(config.getSchedule());
+    }
+
+    @Override
+    public void execute() throws Exception {
+        final Shrinker.Candidate result = new Shrinker(config).shrink(harness, schedule);
+        if (result == null) {
+            LOG.info("Couldn't reproduce the failure, so there is nothing to shrink");
+            return;
+        }
+        LOG.info("Smallest failing execution: --shrinkScenario {} --harness '{}' --schedule '{}'",
+                config.getShrinkScenario(), result.getHarness().encode(), result.getSchedule().encode());
+    }
+}
@@ -0,0 +1,186 @@
+package edu.upenn.zootester.scenario;
+
+import edu.upenn.zootester.ensemble.ZKEnsemble;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.harness.RequestOutcome;
+import edu.upenn.zootester.harness.RequestPhase;
+import edu.upenn.zootester.harness.SequentialConsistency;
+import edu.upenn.zootester.schedule.Clock;
+import edu.upenn.zootester.trace.Trace;
+import edu.upenn.zootester.trace.TraceEvent;
+import edu.upenn.zootester.trace.TraceRecorder;
+import edu.upenn.zootester.util.Assert;
+import edu.upenn.zootester.util.AssertionFailureError;
+import edu.upenn.zootester.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/***
+ * Replays traces of executions of a harness, recorded by any of the harness scenarios. The replayer takes
+ * the recorded steps in order, on the configured clock at the recorded times, instead of making random
+ * choices, and then checks the final state as the scenarios do.
+ * <p>
+ * The steps are replayed exactly, but ZooKeeper's own timing is not, so callbacks may report different
+ * outcomes than in the recorded execution. Such divergences are logged, and the final state is checked
+ * against the outcomes of the replay.
+ */
+public class TraceReplayer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TraceReplayer.class);
+    private static final long OUTSTANDING_REQUESTS_TIMEOUT = 5_000;
+
+    private final Harness harness;
+
+    private Config config;
+    private ZKEnsemble zkEnsemble;
+
+    public TraceReplayer(final Harness harness) {
+        this.harness = harness;
+    }
+
+    public void init(final Config config) throws IOException {
+        this.config = config;
+        zkEnsemble = new ZKEnsemble(config.getServers(), config.isProxied());
+        zkEnsemble.init();
+    }
+
+    public void tearDown() throws IOException {
+        zkEnsemble.tearDown();
+    }
+
+    /***
+     * @throws IllegalArgumentException If the trace is of another harness, or of an ensemble of another size
+     */
+    public ExecutionOutcome replay(final Trace trace) {
+        if (!trace.getEncodedHarness().equals(harness.encode())) {
+            throw new IllegalArgumentException("The trace is of another harness: " + trace.getEncodedHarness());
+        }
+        if (trace.getServers() != config.getServers()) {
+            throw new IllegalArgumentException("The trace is of an ensemble of " + trace.getServers()
+                    + " servers, but " + config.getServers() + " are configured");
+        }
+        final TraceRecorder recorder = new TraceRecorder(trace.getEncodedHarness(), trace.getServers(), () -> 0);
+        try {
+            replayEvents(trace, recorder);
+            return ExecutionOutcome.PASSED;
+        } catch (final Exception e) {
+            LOG.error("Exception while replaying trace", e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        } catch (final AssertionFailureError e) {
+            LOG.error("Assertion failed", e);
+            return ExecutionOutcome.FAILED_ASSERTION;
+        } finally {
+            final List<String> recorded = outcomes(trace);
+            final List<String> replayed = outcomes(recorder.finish(ExecutionOutcome.PASSED));
+            if (!recorded.equals(replayed)) {
+                LOG.warn("The replay diverged from the trace: recorded outcomes = {}, replayed outcomes = {}",
+                        recorded, replayed);
+            }
+        }
+    }
+
+    private static List<String> outcomes(final Trace trace) {
+        return trace.getOutcomeEvents().stream()
+                .map(event -> event.getPhaseIndex() + ":" + event.getOutcome())
+                .collect(Collectors.toList());
+    }
+
+    /***
+     * Brings the ensemble into the state in which all scenarios' executions start, with the initial request
+     * applied and all servers stopped. Scenarios that start with running servers record starting them.
+     */
+    private void prepareEnsemble() throws Exception {
+        if (config.useCheckpoint()) {
+            if (!zkEnsemble.hasCheckpoint()) {
+                zkEnsemble.checkpoint(harness.getInitRequest());
+            }
+            zkEnsemble.restoreEnsemble();
+        } else {
+            zkEnsemble.startEnsemble();
+            zkEnsemble.handleRequest(zkEnsemble.getLeader(), harness.getInitRequest());
+            zkEnsemble.stopAllServers();
+        }
+    }
+
+    private void replayEvents(final Trace trace, final TraceRecorder recorder) throws Exception {
+        try {
+            prepareEnsemble();
+            final Map<Integer, Boolean> executedPhases = new ConcurrentHashMap<>();
+            final Map<Integer, Boolean> maybeExecutedPhases = new ConcurrentHashMap<>();
+            final List<CompletableFuture<Void>> outstandingRequests = new ArrayList<>();
+            final Clock clock = Clock.forName(config.getClock(), () -> zkEnsemble.isQuiescent()
+                    && outstandingRequests.stream().allMatch(CompletableFuture::isDone));
+
+            final long startTime = clock.now();
+            for (final TraceEvent event : trace.getEvents()) {
+                clock.advanceTo(startTime + event.getTime());
+                switch (event.getType()) {
+                    case START:
+                        zkEnsemble.startServers(event.getServers());
+                        break;
+                    case CRASH:
+                        zkEnsemble.crashServers(event.getServers());
+                        break;
+                    case STOP:
+                        zkEnsemble.stopServers(event.getServers());
+                        break;
+                    case REQUEST:
+                        final int phaseIndex = event.getPhaseIndex();
+                        final RequestPhase phase = harness.getPhases().get(phaseIndex).match(
+                                emptyPhase -> null, requestPhase -> requestPhase);
+                        if (phase == null) {
+                            throw new IOException("The trace issues a request in the empty phase " + phaseIndex);
+                        }
+                        LOG.info("Initiating request for {}", phase);
+                        final CompletableFuture<RequestOutcome> completion = new CompletableFuture<>();
+                        final CompletableFuture<Void> recorded = completion.thenAccept(outcome -> {
+                            recorder.outcome(phaseIndex, outcome);
+                            if (outcome == RequestOutcome.SUCCESS) {
+                                executedPhases.put(phaseIndex, true);
+                            } else if (outcome == RequestOutcome.UNKNOWN) {
+                                maybeExecutedPhases.put(phaseIndex, true);
+                            }
+                        });
+                        outstandingRequests.add(recorded);
+                        if (event.isAwaited()) {
+                            zkEnsemble.handleRequest(phase.getNode(), phase.getRequest(completion), recorded,
+                                    config.getRequestTimeout());
+                        } else {
+                            zkEnsemble.handleRequest(phase.getNode(), phase.getRequest(completion));
+                        }
+                        break;
+                    case OUTCOME:
+                        // Outcomes are reported by ZooKeeper, not taken by the scenario
+                        break;
+                }
+            }
+
+            try {
+                CompletableFuture.allOf(outstandingRequests.toArray(CompletableFuture<?>[]::new))
+                        .get(OUTSTANDING_REQUESTS_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException e) {
+                LOG.warn("Not all requests are done after waiting for {} ms. Proceeding anyway...",
+                        OUTSTANDING_REQUESTS_TIMEOUT);
+            }
+
+            zkEnsemble.startAllServers();
+            final SequentialConsistency property =
+                    harness.getConsistencyProperty(executedPhases.keySet(), maybeExecutedPhases.keySet());
+            final boolean result = zkEnsemble.checkProperty(property);
+            Assert.assertTrue("All servers should be in the same state" +
+                    ", and the state should be allowed under sequential consistency", result);
+        } finally {
+            zkEnsemble.stopEnsemble();
+        }
+    }
+}
@@ -1,40 +1,53 @@
 package edu.upenn.zootester.scenario;
 
+import edu.upenn.zootester.ensemble.EnsemblePool;
 import edu.upenn.zootester.ensemble.ZKEnsemble;
-import edu.upenn.zootester.ensemble.ZKProperty;
 import edu.upenn.zootester.fault.ExactFaultGenerator;
 import edu.upenn.zootester.fault.FaultGenerator;
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.fault.FaultScheduleEnumerator;
+import edu.upenn.zootester.fault.PhaseFaults;
 import edu.upenn.zootester.harness.EmptyPhase;
 import edu.upenn.zootester.harness.Harness;
 import edu.upenn.zootester.harness.Phase;
+import edu.upenn.zootester.harness.RequestOutcome;
+import edu.upenn.zootester.harness.SequentialConsistency;
 import edu.upenn.zootester.harness.UnconditionalWritePhase;
+import edu.upenn.zootester.guide.ExploredSchedules;
+import edu.upenn.zootester.guide.NoveltyGuide;
 import edu.upenn.zootester.subset.RandomSubsetGenerator;
+import edu.upenn.zootester.trace.TraceArchive;
+import edu.upenn.zootester.trace.TraceRecorder;
 import edu.upenn.zootester.util.Assert;
 import edu.upenn.zootester.util.AssertionFailureError;
 import edu.upenn.zootester.util.Config;
+import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
-public class TrueToThePaperScenario implements Scenario {
+public class TrueToThePaperScenario implements ScheduleScenario {
 
     private static final Logger LOG = LoggerFactory.getLogger(TrueToThePaperScenario.class);
 
-    private static final int TOTAL_SERVERS = 3;
-    private static final int QUORUM = 2;
-    private static final List<Integer> ALL_SERVERS = List.of(0, 1, 2);
-
     private final Random random = new Random();
-    private final ZKEnsemble zkEnsemble = new ZKEnsemble(TOTAL_SERVERS);
     private final Harness harness;
 
+    private ZKEnsemble zkEnsemble;
+    private EnsemblePool ensemblePool;
     private Config config;
     private RandomSubsetGenerator subsetGenerator;
     private FaultGenerator faultGenerator;
+    private NoveltyGuide guide;
+    private ExploredSchedules explored;
+    private FaultScheduleEnumerator enumerator;
+    private TraceRecorder recorder = TraceRecorder.disabled();
 
     public TrueToThePaperScenario(final Harness harness) {
         this.harness = harness;
@@ -54,9 +67,23 @@ public class TrueToThePaperScenario implements Scenario {
         this.subsetGenerator = new RandomSubsetGenerator(random);
 
         // In this scenario we allow all nodes to be crashed in a phase
-        this.faultGenerator = new ExactFaultGenerator(config.getPhases(), TOTAL_SERVERS, config.getFaults(), random);
+        this.faultGenerator = new ExactFaultGenerator(config.getPhases(), config.getServers(), config.getFaults(), random);
+        if (config.isExhaustive()) {
+            this.enumerator = enumerateSchedules(harness, config);
+        } else if (config.isGuided()) {
+            this.guide = NoveltyGuide.forHarness(harness.encode());
+        }
+        if (config.getExplored() != null) {
+            this.explored = ExploredSchedules.open(Path.of(config.getExplored()));
+        }
 
-        zkEnsemble.init();
+        if (config.getStandby() > 0) {
+            ensemblePool = new EnsemblePool(config.getServers(), config.isProxied(), config.getStandby(),
+                    this::prepareEnsemble);
+        } else {
+            zkEnsemble = new ZKEnsemble(config.getServers(), config.isProxied());
+            zkEnsemble.init();
+        }
     }
 
     @Override
@@ -71,102 +98,385 @@ public class TrueToThePaperScenario implements Scenario {
             } else {
                 seed = random.nextLong();
             }
-            random.setSeed(seed);
             LOG.info("Starting execution {}: seed = {}", i, seed);
-            try {
-                singleExecution();
-            } catch (final Exception e) {
-                LOG.error("Exception while executing scenario", e);
-                ++failedOtherwise;
-            } catch (final AssertionFailureError e) {
-                LOG.error("Assertion failed", e);
+            final ExecutionOutcome outcome = execute(seed);
+            if (outcome == ExecutionOutcome.FAILED_ASSERTION) {
                 ++failedAssertions;
+            } else if (outcome == ExecutionOutcome.FAILED_OTHERWISE) {
+                ++failedOtherwise;
             }
             LOG.info("Finished execution {}: seed = {}", i, seed);
         }
 
         LOG.info("Finished executions: \tFailed assertions: {}\tFailed otherwise: {}\tTotal: {}",
                 failedAssertions, failedOtherwise, config.getExecutions());
-        zkEnsemble.tearDown();
+        tearDown();
     }
 
-    private void singleExecution() throws Exception {
-        try (final AutoCloseable cleanUp = () -> {
+    @Override
+    public ExecutionOutcome execute(final long seed) {
+        random.setSeed(seed);
+        final FaultSchedule schedule;
+        try {
+            // Branches choose their faults as they go
+            schedule = config.getBranching() > 1 ? null : claimFaultSchedule(seed);
+        } catch (final IOException e) {
+            LOG.error("Exception while choosing the fault schedule", e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        }
+        if (config.getBranching() <= 1 && schedule == null) {
+            LOG.info("Skipping execution, all sampled fault schedules have been explored before");
+            return ExecutionOutcome.SKIPPED;
+        }
+        final ExecutionOutcome outcome = runExecution(schedule);
+        if (explored != null && schedule != null) {
+            try {
+                explored.finish(harness.encode(), schedule, outcome);
+            } catch (final IOException e) {
+                LOG.error("Couldn't record the explored schedule", e);
+            }
+        }
+        return outcome;
+    }
+
+    @Override
+    public ExecutionOutcome execute(final FaultSchedule schedule) {
+        return runExecution(schedule);
+    }
+
+    private ExecutionOutcome runExecution(final FaultSchedule schedule) {
+        // The phases don't wait on a clock, so all steps are recorded at time 0. Branches aren't recorded.
+        recorder = schedule == null ? TraceRecorder.disabled()
+                : new TraceRecorder(harness.encode(), config.getServers(), () -> 0);
+        final ExecutionOutcome outcome = recordExecution(schedule);
+        if (recorder.isEnabled()) {
+            TraceArchive.archive(config, recorder.finish(outcome));
+        }
+        return outcome;
+    }
+
+    private ExecutionOutcome recordExecution(final FaultSchedule schedule) {
+        try {
+            singleExecution(schedule);
+            return ExecutionOutcome.PASSED;
+        } catch (final Exception e) {
+            LOG.error("Exception while executing scenario", e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        } catch (final AssertionFailureError e) {
+            LOG.error("Assertion failed", e);
+            if (schedule != null) {
+                LOG.info("Failing execution: --harness '{}' --schedule '{}'", harness.encode(), schedule.encode());
+            }
+            return ExecutionOutcome.FAILED_ASSERTION;
+        }
+    }
+
+    @Override
+    public Harness getHarness() {
+        return harness;
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        if (ensemblePool != null) {
+            ensemblePool.close();
+        } else {
+            zkEnsemble.tearDown();
+        }
+    }
+
+    /***
+     * Brings the ensemble into the state in which an execution starts, with the initial request applied and
+     * the clients open. All servers are stopped.
+     */
+    private void prepareEnsemble(final ZKEnsemble ensemble) throws Exception {
+        if (config.useCheckpoint()) {
+            // We start from the saved state right after the initial phase
+            if (!ensemble.hasCheckpoint()) {
+                ensemble.checkpoint(harness.getInitRequest());
+            }
+            ensemble.restoreEnsemble();
+        } else {
+            ensemble.startEnsemble();
+
+            // We have an initial phase in which we create the znodes
+            final int leader = ensemble.getLeader();
+            ensemble.handleRequest(leader, harness.getInitRequest());
+            ensemble.stopAllServers();
+        }
+    }
+
+    private void releaseEnsemble() throws IOException, InterruptedException {
+        if (ensemblePool != null) {
+            ensemblePool.release(zkEnsemble);
+        } else {
             zkEnsemble.stopEnsemble();
+        }
+    }
+
+    /***
+     * @param schedule The fault schedule of the execution, or null when exploring branches
+     */
+    private void singleExecution(final FaultSchedule schedule) throws Exception {
+        if (ensemblePool != null) {
+            zkEnsemble = ensemblePool.acquire();
+        }
+        try (final AutoCloseable cleanUp = () -> {
+            releaseEnsemble();
             faultGenerator.reset();
         }) {
-            zkEnsemble.startEnsemble();
-
-            // We have an initial phase in which we create the znodes
-            final int leader = zkEnsemble.getLeader();
-            zkEnsemble.handleRequest(leader, harness.getInitRequest());
-            zkEnsemble.stopAllServers();
+            if (ensemblePool == null) {
+                prepareEnsemble(zkEnsemble);
+            }
 
             final Map<Integer, Boolean> executedPhases = new ConcurrentHashMap<>();
             final Map<Integer, Boolean> maybeExecutedPhases = new ConcurrentHashMap<>();
+            if (config.getBranching() > 1) {
+                final List<String> failedBranches = new ArrayList<>();
+                final int totalBranches = explore(0, "", executedPhases, maybeExecutedPhases, failedBranches);
+                LOG.info("Explored {} branches, {} of which failed: {}",
+                        totalBranches, failedBranches.size(), failedBranches);
+                Assert.assertTrue("All explored branches should end in a sequentially consistent state",
+                        failedBranches.isEmpty());
+                return;
+            }
+
+            LOG.info("Executing {}", schedule);
             final ListIterator<Phase> it = harness.getPhases().listIterator();
             while (it.hasNext()) {
                 final int phaseIndex = it.nextIndex();
                 final Phase phase = it.next();
-                final int faults = faultGenerator.generate();
-                final List<Integer> serversToCrash = subsetGenerator.generate(TOTAL_SERVERS, faults);
-                final List<Integer> serversToStop = phase.throwingMatch(
-                        emptyPhase -> {
-                            final List<Integer> serversToStart = ALL_SERVERS.stream()
-                                    .filter(i -> !serversToCrash.contains(i))
-                                    .collect(Collectors.toList());
-                            if (serversToStart.size() < QUORUM) {
-                                // The phase will be stuck with the servers trying to elect a leader,
-                                // so we skip it by not starting/stopping any servers.
-                                return Collections.emptyList();
-                            }
-                            zkEnsemble.startServers(serversToStart);
-                            return serversToStart;
-                        },
-                        requestPhase -> {
-                            final List<Integer> serversToCrashLater = subsetGenerator.generate(faults).stream()
-                                    .map(serversToCrash::get).collect(Collectors.toList());
-                            final List<Integer> serversToStart = ALL_SERVERS.stream()
-                                    .filter(i -> !serversToCrash.contains(i) || serversToCrashLater.contains(i))
-                                    .collect(Collectors.toList());
-                            if (serversToStart.size() < QUORUM) {
-                                // The phase will be stuck with the servers trying to elect a leader,
-                                // so we skip it by not starting/stopping any servers.
-                                return Collections.emptyList();
-                            }
-                            zkEnsemble.startServers(serversToStart);
-                            zkEnsemble.crashServers(serversToCrashLater);
-
-                            if (!serversToCrash.contains(requestPhase.getNode())) {
-                                LOG.info("Initiating request for {}", requestPhase);
-                                zkEnsemble.handleRequest(requestPhase.getNode(), requestPhase.getRequest(
-                                        // On success, add to the map of executed phases
-                                        () -> {
-                                            LOG.info("Phase {} request completed", phaseIndex);
-                                            executedPhases.put(phaseIndex, true);
-                                        },
-                                        // On undetermined result, add to the map of maybe executed phases
-                                        () -> {
-                                            LOG.warn("Phase {} request undetermined", phaseIndex);
-                                            maybeExecutedPhases.put(phaseIndex, true);
-                                        },
-                                        // No cleanup here
-                                        () -> {
-                                        }
-                                ));
+                executePhase(phaseIndex, phase, schedule.get(phaseIndex), executedPhases, maybeExecutedPhases);
+            }
+
+            checkConsistency(executedPhases, maybeExecutedPhases, schedule);
+        }
+    }
+
+    private FaultSchedule generateFaultSchedule() {
+        faultGenerator.reset();
+        final List<PhaseFaults> phaseFaults = new ArrayList<>();
+        for (final Phase phase : harness.getPhases()) {
+            phaseFaults.add(generatePhaseFaults(phase));
+        }
+        return new FaultSchedule(phaseFaults);
+    }
+
+    /***
+     * Generates the fault schedule of an execution. In guided mode, the guide chooses among several random
+     * candidates. In exhaustive mode, the seed is the rank of the schedule.
+     */
+    private FaultSchedule chooseFaultSchedule(final long seed) {
+        if (enumerator != null) {
+            return enumerator.unrank(seed);
+        }
+        if (guide == null) {
+            return generateFaultSchedule();
+        }
+        final List<FaultSchedule> candidates = new ArrayList<>();
+        for (int i = 0; i < NoveltyGuide.CANDIDATES; ++i) {
+            candidates.add(generateFaultSchedule());
+        }
+        return guide.choose(candidates, random);
+    }
+
+    /***
+     * Chooses the fault schedule of an execution and claims it in the explored set. Schedules that were explored
+     * before are resampled, except in exhaustive mode, where each rank stands for a single schedule.
+     *
+     * @return The schedule, or null if no unexplored schedule was found
+     */
+    private FaultSchedule claimFaultSchedule(final long seed) throws IOException {
+        FaultSchedule schedule = chooseFaultSchedule(seed);
+        if (explored == null) {
+            return schedule;
+        }
+        for (int i = 0; !explored.claim(harness.encode(), schedule); ++i) {
+            if (enumerator != null || i == ExploredSchedules.MAX_RESAMPLES) {
+                return null;
+            }
+            schedule = chooseFaultSchedule(seed);
+        }
+        return schedule;
+    }
+
+    /***
+     * Enumerates the fault schedules that this scenario generates for the harness.
+     */
+    public static FaultScheduleEnumerator enumerateSchedules(final Harness harness, final Config config) {
+        return new FaultScheduleEnumerator(harness.getPhases(), config.getServers(), config.getServers(),
+                config.getFaults());
+    }
+
+    private PhaseFaults generatePhaseFaults(final Phase phase) {
+        final int faults = faultGenerator.generate();
+        final List<Integer> serversToCrash = subsetGenerator.generate(config.getServers(), faults);
+        final List<Integer> serversToCrashLater = phase.match(
+                emptyPhase -> Collections.emptyList(),
+                requestPhase -> subsetGenerator.generate(faults).stream()
+                        .map(serversToCrash::get).collect(Collectors.toList())
+        );
+        return new PhaseFaults(serversToCrash, serversToCrashLater);
+    }
+
+    private void executePhase(final int phaseIndex,
+                              final Phase phase,
+                              final PhaseFaults phaseFaults,
+                              final Map<Integer, Boolean> executedPhases,
+                              final Map<Integer, Boolean> maybeExecutedPhases)
+            throws InterruptedException, IOException, KeeperException {
+        final List<Integer> serversToCrash = phaseFaults.getServersToCrash();
+        final List<Integer> serversToCrashLater = phaseFaults.getServersToCrashLater();
+        final List<Integer> serversToStop = phase.throwingMatch(
+                emptyPhase -> {
+                    final List<Integer> serversToStart = zkEnsemble.getAllIds().stream()
+                            .filter(i -> !serversToCrash.contains(i))
+                            .collect(Collectors.toList());
+                    if (serversToStart.size() < zkEnsemble.getQuorumSize()) {
+                        // The phase will be stuck with the servers trying to elect a leader,
+                        // so we skip it by not starting/stopping any servers.
+                        return Collections.emptyList();
+                    }
+                    recorder.start(serversToStart);
+                    zkEnsemble.startServers(serversToStart);
+                    return serversToStart;
+                },
+                requestPhase -> {
+                    final List<Integer> serversToStart = zkEnsemble.getAllIds().stream()
+                            .filter(i -> !serversToCrash.contains(i) || serversToCrashLater.contains(i))
+                            .collect(Collectors.toList());
+                    if (serversToStart.size() < zkEnsemble.getQuorumSize()) {
+                        // The phase will be stuck with the servers trying to elect a leader,
+                        // so we skip it by not starting/stopping any servers.
+                        return Collections.emptyList();
+                    }
+                    recorder.start(serversToStart);
+                    zkEnsemble.startServers(serversToStart);
+                    recorder.crash(serversToCrashLater);
+                    zkEnsemble.crashServers(serversToCrashLater);
+
+                    if (!serversToCrash.contains(requestPhase.getNode())) {
+                        LOG.info("Initiating request for {}", requestPhase);
+                        final CompletableFuture<RequestOutcome> completion = new CompletableFuture<>();
+                        final CompletableFuture<Void> recorded = completion.thenAccept(outcome -> {
+                            recorder.outcome(phaseIndex, outcome);
+                            if (outcome == RequestOutcome.SUCCESS) {
+                                // On success, add to the map of executed phases
+                                LOG.info("Phase {} request completed", phaseIndex);
+                                executedPhases.put(phaseIndex, true);
+                            } else if (outcome == RequestOutcome.UNKNOWN) {
+                                // On undetermined result, add to the map of maybe executed phases
+                                LOG.warn("Phase {} request undetermined", phaseIndex);
+                                maybeExecutedPhases.put(phaseIndex, true);
                             }
-                            return serversToStart;
-                        }
-                );
-                zkEnsemble.stopServers(serversToStop);
+                        });
+                        recorder.request(phaseIndex, true);
+                        zkEnsemble.handleRequest(requestPhase.getNode(), requestPhase.getRequest(completion),
+                                recorded, config.getRequestTimeout());
+                    }
+                    return serversToStart;
+                }
+        );
+        recorder.stop(serversToStop);
+        zkEnsemble.stopServers(serversToStop);
+    }
+
+    /***
+     * @param schedule The schedule of the execution, whose outcome is recorded by the guide, or null for
+     *                 branches, which aren't guided
+     */
+    private void checkConsistency(final Map<Integer, Boolean> executedPhases,
+                                  final Map<Integer, Boolean> maybeExecutedPhases,
+                                  final FaultSchedule schedule)
+            throws InterruptedException, IOException, KeeperException {
+        zkEnsemble.startAllServers();
+        final SequentialConsistency property =
+                harness.getConsistencyProperty(executedPhases.keySet(), maybeExecutedPhases.keySet());
+        final boolean result = zkEnsemble.checkProperty(property);
+        if (guide != null && schedule != null) {
+            guide.record(schedule, NoveltyGuide.fingerprint(executedPhases.keySet(),
+                    maybeExecutedPhases.keySet(), property.getObservedStates(), zkEnsemble.getLeaderHistory()));
+        }
+        Assert.assertTrue("All servers should be in the same state" +
+                ", and the state should be allowed under sequential consistency", result);
+    }
+
+    /***
+     * The number of distinct fault choices for the phase, given the numbers of faults it may have.
+     */
+    private long countPhaseChoices(final Phase phase, final List<Integer> possibleFaults) {
+        final boolean hasRequest = phase.match(emptyPhase -> false, requestPhase -> true);
+        long total = 0;
+        for (final int faults : possibleFaults) {
+            // n choose faults servers to crash, and any subset of them to crash later
+            long choices = 1;
+            for (int i = 0; i < faults; ++i) {
+                choices = choices * (config.getServers() - i) / (i + 1);
             }
+            total += hasRequest ? choices << faults : choices;
+        }
+        return total;
+    }
 
-            zkEnsemble.startAllServers();
-            final ZKProperty property =
-                    harness.getConsistencyProperty(executedPhases.keySet(), maybeExecutedPhases.keySet());
-            final boolean result = zkEnsemble.checkProperty(property);
-            Assert.assertTrue("All servers should be in the same state" +
-                    ", and the state should be allowed under sequential consistency", result);
+    /***
+     * Explores up to config.getBranching() distinct fault choices for every phase starting from phaseIndex,
+     * which results in a search tree whose leaves are complete executions. Phases with fewer distinct choices
+     * than that get one branch per choice, since sibling branches with the same faults are identical. All servers are stopped at phase
+     * boundaries, so instead of replaying the shared prefix for every sibling branch, we save the state of
+     * the ensemble before executing the phase, and restore it before each subsequent sibling.
+     *
+     * @param branch         Path from the root to the current node, used for logging
+     * @param failedBranches Collects the paths to the leaves that failed the consistency check
+     * @return The total number of leaves explored
+     */
+    private int explore(final int phaseIndex,
+                        final String branch,
+                        final Map<Integer, Boolean> executedPhases,
+                        final Map<Integer, Boolean> maybeExecutedPhases,
+                        final List<String> failedBranches) throws InterruptedException, IOException, KeeperException {
+        final List<Phase> phases = harness.getPhases();
+        if (phaseIndex == phases.size()) {
+            try {
+                checkConsistency(executedPhases, maybeExecutedPhases, null);
+            } catch (final AssertionFailureError e) {
+                LOG.error("Assertion failed in branch {}", branch, e);
+                failedBranches.add(branch);
+            }
+            // Restore the invariant that all servers are stopped at phase boundaries
+            zkEnsemble.stopAllServers();
+            return 1;
+        }
+
+        final Phase phase = phases.get(phaseIndex);
+        final String checkpoint = "phase-" + phaseIndex;
+        final FaultGenerator.State faultGeneratorState = faultGenerator.getState();
+        zkEnsemble.saveCheckpoint(checkpoint);
+        try {
+            final long distinctChoices = countPhaseChoices(phase, faultGenerator.possibleFaults());
+            final Set<PhaseFaults> chosenFaults = new HashSet<>();
+            int totalBranches = 0;
+            for (int i = 0; i < config.getBranching() && chosenFaults.size() < distinctChoices; ++i) {
+                if (i > 0) {
+                    zkEnsemble.restoreCheckpoint(checkpoint);
+                }
+                // Every choice has a positive probability, so this finds the remaining ones eventually
+                PhaseFaults phaseFaults;
+                do {
+                    faultGenerator.setState(faultGeneratorState);
+                    phaseFaults = generatePhaseFaults(phase);
+                } while (!chosenFaults.add(phaseFaults));
+                final String childBranch = branch + i;
+                LOG.info("Branch {}: executing phase {} with {}", childBranch, phaseIndex, phaseFaults);
+
+                final Map<Integer, Boolean> childExecutedPhases = new ConcurrentHashMap<>(executedPhases);
+                final Map<Integer, Boolean> childMaybeExecutedPhases = new ConcurrentHashMap<>(maybeExecutedPhases);
+                executePhase(phaseIndex, phase, phaseFaults, childExecutedPhases, childMaybeExecutedPhases);
+                totalBranches += explore(phaseIndex + 1, childBranch,
+                        childExecutedPhases, childMaybeExecutedPhases, failedBranches);
+            }
+            return totalBranches;
+        } finally {
+            zkEnsemble.dropCheckpoint(checkpoint);
         }
     }
 }
@@ -0,0 +1,33 @@
+package edu.upenn.zootester.schedule;
+
+import java.util.function.BooleanSupplier;
+
+/***
+ * The time base of a scenario's event loop. Events are scheduled at timestamps of the clock, and the loop
+ * advances the clock to the timestamp of the next event before executing it.
+ */
+public interface Clock {
+
+    long now();
+
+    /***
+     * Blocks until the clock has reached the timestamp.
+     */
+    void advanceTo(long timestamp) throws InterruptedException;
+
+    /***
+     * @param quiescence Tells whether the system under test has settled, which lets clocks skip time
+     */
+    static Clock forName(final String name, final BooleanSupplier quiescence) {
+        switch (name) {
+            case "real":
+                return new RealTimeClock();
+            case "compressed":
+                return new CompressingClock(quiescence);
+            case "virtual":
+                return new VirtualClock(quiescence);
+            default:
+                throw new IllegalArgumentException("Unknown clock " + name);
+        }
+    }
+}
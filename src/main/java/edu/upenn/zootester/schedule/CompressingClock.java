@@ -0,0 +1,64 @@
+package edu.upenn.zootester.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.BooleanSupplier;
+
+/***
+ * Runs in real time while the system under test is busy, and skips the rest of the wait for the next event
+ * once the system has been quiescent for a while. The clock runs ahead of wall-clock time by the total time
+ * skipped so far.
+ * <p>
+ * Note that the servers' own timers, e.g., session expiration, still run in real time, so skipped time
+ * doesn't count towards them.
+ */
+public class CompressingClock implements Clock {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompressingClock.class);
+
+    private static final long DEFAULT_SETTLE_MILLIS = 100;
+
+    private final Quiescence quiescence;
+    private final long settleMillis;
+
+    private long skippedMillis = 0;
+
+    /***
+     * @param quiescence   Tells whether the system under test has settled
+     * @param settleMillis How long the system has to stay quiescent after the last event before we skip time,
+     *                     so that we don't act on a state that doesn't reflect the last event yet
+     */
+    public CompressingClock(final BooleanSupplier quiescence, final long settleMillis) {
+        this.quiescence = new Quiescence(quiescence);
+        this.settleMillis = settleMillis;
+    }
+
+    public CompressingClock(final BooleanSupplier quiescence) {
+        this(quiescence, DEFAULT_SETTLE_MILLIS);
+    }
+
+    @Override
+    public long now() {
+        return System.currentTimeMillis() + skippedMillis;
+    }
+
+    @Override
+    public void advanceTo(final long timestamp) throws InterruptedException {
+        final long remaining = timestamp - now();
+        if (remaining <= 0) {
+            return;
+        }
+        if (quiescence.await(settleMillis, remaining)) {
+            final long skipped = timestamp - now();
+            if (skipped > 0) {
+                LOG.debug("Skipping {} ms of quiescence", skipped);
+                skippedMillis += skipped;
+            }
+        }
+    }
+
+    public long getSkippedMillis() {
+        return skippedMillis;
+    }
+}
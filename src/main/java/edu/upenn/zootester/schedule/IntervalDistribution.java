@@ -0,0 +1,45 @@
+package edu.upenn.zootester.schedule;
+
+import java.util.Random;
+
+/***
+ * Distributions of the gaps between random events, parameterized by their mean.
+ */
+public enum IntervalDistribution {
+    /***
+     * The gaps of a Poisson process
+     */
+    EXPONENTIAL {
+        @Override
+        public long sample(final Random random, final long mean) {
+            return -(long) (mean * Math.log(1.0 - random.nextDouble()));
+        }
+    },
+    UNIFORM {
+        @Override
+        public long sample(final Random random, final long mean) {
+            return (long) (2 * mean * random.nextDouble());
+        }
+    },
+    FIXED {
+        @Override
+        public long sample(final Random random, final long mean) {
+            return mean;
+        }
+    };
+
+    public abstract long sample(Random random, long mean);
+
+    public static IntervalDistribution forName(final String name) {
+        switch (name) {
+            case "exponential":
+                return EXPONENTIAL;
+            case "uniform":
+                return UNIFORM;
+            case "fixed":
+                return FIXED;
+            default:
+                throw new IllegalArgumentException("Unknown interval distribution " + name);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package edu.upenn.zootester.schedule;
+
+import java.util.function.BooleanSupplier;
+
+/***
+ * Waits for the system under test to settle by polling a quiescence condition.
+ */
+final class Quiescence {
+
+    private static final long POLL_MILLIS = 5;
+
+    private final BooleanSupplier condition;
+
+    Quiescence(final BooleanSupplier condition) {
+        this.condition = condition;
+    }
+
+    /***
+     * Waits until the condition has held for settleMillis without interruption, but at most timeoutMillis.
+     *
+     * @return Whether the system settled in time
+     */
+    boolean await(final long settleMillis, final long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        long quiescentSince = -1;
+        while (true) {
+            final long now = System.currentTimeMillis();
+            if (!condition.getAsBoolean()) {
+                quiescentSince = -1;
+            } else if (quiescentSince < 0) {
+                quiescentSince = now;
+            }
+            if (quiescentSince >= 0 && now - quiescentSince >= settleMillis) {
+                return true;
+            }
+            if (now >= deadline) {
+                return false;
+            }
+            Thread.sleep(Math.min(POLL_MILLIS, deadline - now));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package edu.upenn.zootester.schedule;
+
+/***
+ * Wall-clock time. Advancing the clock sleeps until the timestamp.
+ */
+public class RealTimeClock implements Clock {
+
+    @Override
+    public long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void advanceTo(final long timestamp) throws InterruptedException {
+        final long pause = timestamp - now();
+        if (pause > 0) {
+            Thread.sleep(pause);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package edu.upenn.zootester.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.BooleanSupplier;
+
+/***
+ * Logical time that starts at 0 and only moves when the event loop advances it. Advancing the clock waits
+ * for the system under test to settle and then jumps to the timestamp, so events fire in the order of their
+ * timestamps, which only depend on the seed, and as soon as the system has reacted to the previous event.
+ * <p>
+ * If the system doesn't settle within the timeout, the clock moves on anyway, and the execution may no longer
+ * be reproducible from its seed.
+ */
+public class VirtualClock implements Clock {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualClock.class);
+
+    private static final long DEFAULT_SETTLE_MILLIS = 20;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    private final Quiescence quiescence;
+    private final long settleMillis;
+    private final long timeoutMillis;
+
+    private long now = 0;
+
+    public VirtualClock(final BooleanSupplier quiescence, final long settleMillis, final long timeoutMillis) {
+        this.quiescence = new Quiescence(quiescence);
+        this.settleMillis = settleMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public VirtualClock(final BooleanSupplier quiescence) {
+        this(quiescence, DEFAULT_SETTLE_MILLIS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    @Override
+    public void advanceTo(final long timestamp) throws InterruptedException {
+        if (!quiescence.await(settleMillis, timeoutMillis)) {
+            LOG.warn("The system did not settle within {} ms before {}, proceeding anyway", timeoutMillis, timestamp);
+        }
+        now = Math.max(now, timestamp);
+    }
+}
@@ -0,0 +1,218 @@
+package edu.upenn.zootester.trace;
+
+import edu.upenn.zootester.harness.RequestOutcome;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/***
+ * The record of a single execution: the harness, the size of the ensemble, the steps that the scenario took in
+ * order, and the outcome. The steps refer to servers by their IDs, so a trace can only be replayed on an ensemble
+ * of the same size. A trace can be replayed by {@link edu.upenn.zootester.scenario.TraceReplayer}, which takes the same steps
+ * instead of making random choices.
+ * <p>
+ * Traces are stored in a compact binary format. Event times are stored as deltas, and all integers as
+ * variable-length quantities, so that a typical event takes 3 to 5 bytes.
+ */
+public class Trace {
+
+    private static final int MAGIC = 0x5A4B5452;
+    private static final int VERSION = 2;
+
+    public static final String FILE_SUFFIX = ".trace";
+
+    private final String encodedHarness;
+    private final int servers;
+    private final ExecutionOutcome outcome;
+    private final List<TraceEvent> events;
+
+    public Trace(final String encodedHarness, final int servers, final ExecutionOutcome outcome,
+                 final List<TraceEvent> events) {
+        this.encodedHarness = encodedHarness;
+        this.servers = servers;
+        this.outcome = outcome;
+        this.events = List.copyOf(events);
+    }
+
+    public String getEncodedHarness() {
+        return encodedHarness;
+    }
+
+    /***
+     * @return The number of servers in the ensemble of the execution
+     */
+    public int getServers() {
+        return servers;
+    }
+
+    public ExecutionOutcome getOutcome() {
+        return outcome;
+    }
+
+    public List<TraceEvent> getEvents() {
+        return events;
+    }
+
+    /***
+     * @return The outcomes reported by the requests' callbacks, in the order in which they were reported
+     */
+    public List<TraceEvent> getOutcomeEvents() {
+        final List<TraceEvent> outcomes = new ArrayList<>();
+        for (final TraceEvent event : events) {
+            if (event.getType() == TraceEvent.Type.OUTCOME) {
+                outcomes.add(event);
+            }
+        }
+        return Collections.unmodifiableList(outcomes);
+    }
+
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(encodedHarness);
+        writeVarLong(out, servers);
+        out.writeByte(outcome.ordinal());
+        writeVarLong(out, events.size());
+        long previousTime = 0;
+        for (final TraceEvent event : events) {
+            out.writeByte(event.getType().ordinal());
+            writeVarLong(out, event.getTime() - previousTime);
+            previousTime = event.getTime();
+            switch (event.getType()) {
+                case START:
+                case CRASH:
+                case STOP:
+                    writeVarLong(out, event.getServers().size());
+                    for (final int server : event.getServers()) {
+                        writeVarLong(out, server);
+                    }
+                    break;
+                case REQUEST:
+                    writeVarLong(out, event.getPhaseIndex());
+                    out.writeBoolean(event.isAwaited());
+                    break;
+                case OUTCOME:
+                    writeVarLong(out, event.getPhaseIndex());
+                    out.writeByte(event.getOutcome().ordinal());
+                    break;
+            }
+        }
+    }
+
+    public static Trace read(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a trace");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        final String encodedHarness = in.readUTF();
+        final int servers = (int) readVarLong(in);
+        final ExecutionOutcome outcome = readEnum(in, ExecutionOutcome.values());
+        final long size = readVarLong(in);
+        final List<TraceEvent> events = new ArrayList<>();
+        long time = 0;
+        for (long i = 0; i < size; ++i) {
+            final TraceEvent.Type type = readEnum(in, TraceEvent.Type.values());
+            time += readVarLong(in);
+            switch (type) {
+                case START:
+                case CRASH:
+                case STOP:
+                    final long count = readVarLong(in);
+                    final List<Integer> serverIds = new ArrayList<>();
+                    for (long j = 0; j < count; ++j) {
+                        serverIds.add((int) readVarLong(in));
+                    }
+                    events.add(TraceEvent.servers(type, time, serverIds));
+                    break;
+                case REQUEST:
+                    events.add(TraceEvent.request(time, (int) readVarLong(in), in.readBoolean()));
+                    break;
+                case OUTCOME:
+                    events.add(TraceEvent.outcome(time, (int) readVarLong(in), readEnum(in, RequestOutcome.values())));
+                    break;
+            }
+        }
+        return new Trace(encodedHarness, servers, outcome, events);
+    }
+
+    public void save(final Path file) throws IOException {
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            write(out);
+        }
+    }
+
+    public static Trace load(final Path file) throws IOException {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return read(in);
+        }
+    }
+
+    private static <E> E readEnum(final DataInput in, final E[] values) throws IOException {
+        final int ordinal = in.readUnsignedByte();
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown value " + ordinal + " in trace");
+        }
+        return values[ordinal];
+    }
+
+    private static void writeVarLong(final DataOutput out, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value + " in trace");
+        }
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(final DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer in trace");
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final Trace that = (Trace) o;
+        return encodedHarness.equals(that.encodedHarness) && servers == that.servers && outcome == that.outcome
+                && events.equals(that.events);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(encodedHarness, servers, outcome, events);
+    }
+
+    @Override
+    public String toString() {
+        return "Trace{harness=" + encodedHarness + ", servers=" + servers + ", outcome=" + outcome + ", events=" + events + '}';
+    }
+}
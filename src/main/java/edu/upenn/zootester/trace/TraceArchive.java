@@ -0,0 +1,74 @@
+package edu.upenn.zootester.trace;
+
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import edu.upenn.zootester.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/***
+ * A directory of trace files, such as the regression corpus of failing executions.
+ */
+public class TraceArchive {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TraceArchive.class);
+
+    private TraceArchive() {
+    }
+
+    /***
+     * Saves the trace under a fresh name in the directory, which is created if needed.
+     *
+     * @return The trace file
+     */
+    public static Path save(final Path dir, final Trace trace) throws IOException {
+        Files.createDirectories(dir);
+        final Path file = dir.resolve("trace-" + UUID.randomUUID() + Trace.FILE_SUFFIX);
+        trace.save(file);
+        return file;
+    }
+
+    /***
+     * Saves the trace of an execution where the configuration asks for it: every trace in config.getTraces(),
+     * and traces of executions that failed an assertion in the regression corpus config.getCorpus(). Errors
+     * are logged, as losing a trace shouldn't fail the execution.
+     */
+    public static void archive(final Config config, final Trace trace) {
+        try {
+            if (config.getTraces() != null) {
+                save(Path.of(config.getTraces()), trace);
+            }
+            if (config.getCorpus() != null && trace.getOutcome() == ExecutionOutcome.FAILED_ASSERTION) {
+                final Path file = save(Path.of(config.getCorpus()), trace);
+                LOG.info("Added the trace of the failing execution to the regression corpus: {}", file);
+            }
+        } catch (final IOException e) {
+            LOG.error("Couldn't save the trace of the execution", e);
+        }
+    }
+
+    /***
+     * Lists the trace files in the directory in the order of their names. A path to a single trace file
+     * lists just that file, and a missing directory lists nothing.
+     */
+    public static List<Path> list(final Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            return List.of(path);
+        }
+        if (!Files.isDirectory(path)) {
+            return List.of();
+        }
+        try (final Stream<Path> files = Files.list(path)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(Trace.FILE_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package edu.upenn.zootester.trace;
+
+import edu.upenn.zootester.harness.RequestOutcome;
+
+import java.util.List;
+import java.util.Objects;
+
+/***
+ * A single step of an execution: servers being started, crashed or stopped, a phase's request being issued,
+ * or a request's callback reporting its outcome.
+ */
+public class TraceEvent {
+
+    public enum Type {
+        START, CRASH, STOP, REQUEST, OUTCOME
+    }
+
+    private final Type type;
+    private final long time;
+    private final List<Integer> servers;
+    private final int phaseIndex;
+    private final boolean awaited;
+    private final RequestOutcome outcome;
+
+    private TraceEvent(final Type type, final long time, final List<Integer> servers, final int phaseIndex,
+                       final boolean awaited, final RequestOutcome outcome) {
+        this.type = type;
+        this.time = time;
+        this.servers = servers;
+        this.phaseIndex = phaseIndex;
+        this.awaited = awaited;
+        this.outcome = outcome;
+    }
+
+    static TraceEvent servers(final Type type, final long time, final List<Integer> servers) {
+        return new TraceEvent(type, time, List.copyOf(servers), -1, false, null);
+    }
+
+    static TraceEvent request(final long time, final int phaseIndex, final boolean awaited) {
+        return new TraceEvent(Type.REQUEST, time, List.of(), phaseIndex, awaited, null);
+    }
+
+    static TraceEvent outcome(final long time, final int phaseIndex, final RequestOutcome outcome) {
+        return new TraceEvent(Type.OUTCOME, time, List.of(), phaseIndex, false, outcome);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /***
+     * The time of the event on the scenario's clock, in milliseconds since the start of the execution, or 0
+     * for scenarios whose steps aren't paced.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public List<Integer> getServers() {
+        return servers;
+    }
+
+    public int getPhaseIndex() {
+        return phaseIndex;
+    }
+
+    /***
+     * Whether the scenario waited for the request to complete before its next step
+     */
+    public boolean isAwaited() {
+        return awaited;
+    }
+
+    public RequestOutcome getOutcome() {
+        return outcome;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final TraceEvent that = (TraceEvent) o;
+        return time == that.time && phaseIndex == that.phaseIndex && awaited == that.awaited
+                && type == that.type && servers.equals(that.servers) && outcome == that.outcome;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, time, servers, phaseIndex, awaited, outcome);
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case REQUEST:
+                return "REQUEST@" + time + "{phase=" + phaseIndex + (awaited ? ", awaited}" : "}");
+            case OUTCOME:
+                return "OUTCOME@" + time + "{phase=" + phaseIndex + ", " + outcome + '}';
+            default:
+                return type + "@" + time + servers;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package edu.upenn.zootester.trace;
+
+import edu.upenn.zootester.harness.RequestOutcome;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+/***
+ * Records the steps of an execution as they are taken. Request outcomes are reported from the clients'
+ * callback threads, so the recorder is thread-safe, and events are recorded in the order in which they are
+ * reported. Event times never go backwards, even if the clock is read concurrently.
+ */
+public class TraceRecorder {
+
+    private final String encodedHarness;
+    private final int servers;
+    private final LongSupplier clock;
+    private final boolean enabled;
+
+    // Guarded by this
+    private final List<TraceEvent> events = new ArrayList<>();
+    private long lastTime = 0;
+
+    /***
+     * @param servers The number of servers in the ensemble
+     * @param clock   The time of the scenario's clock, in milliseconds since the start of the execution
+     */
+    public TraceRecorder(final String encodedHarness, final int servers, final LongSupplier clock) {
+        this(encodedHarness, servers, clock, true);
+    }
+
+    private TraceRecorder(final String encodedHarness, final int servers, final LongSupplier clock,
+                          final boolean enabled) {
+        this.encodedHarness = encodedHarness;
+        this.servers = servers;
+        this.clock = clock;
+        this.enabled = enabled;
+    }
+
+    /***
+     * Creates a recorder for executions that aren't traced, which ignores all events.
+     */
+    public static TraceRecorder disabled() {
+        return new TraceRecorder("", 0, () -> 0, false);
+    }
+
+    private synchronized void add(final LongFunction<TraceEvent> event) {
+        if (!enabled) {
+            return;
+        }
+        lastTime = Math.max(lastTime, clock.getAsLong());
+        events.add(event.apply(lastTime));
+    }
+
+    public void start(final List<Integer> servers) {
+        add(time -> TraceEvent.servers(TraceEvent.Type.START, time, servers));
+    }
+
+    public void crash(final List<Integer> servers) {
+        add(time -> TraceEvent.servers(TraceEvent.Type.CRASH, time, servers));
+    }
+
+    public void stop(final List<Integer> servers) {
+        add(time -> TraceEvent.servers(TraceEvent.Type.STOP, time, servers));
+    }
+
+    /***
+     * @param awaited Whether the scenario waits for the request to complete before its next step
+     */
+    public void request(final int phaseIndex, final boolean awaited) {
+        add(time -> TraceEvent.request(time, phaseIndex, awaited));
+    }
+
+    public void outcome(final int phaseIndex, final RequestOutcome outcome) {
+        add(time -> TraceEvent.outcome(time, phaseIndex, outcome));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized Trace finish(final ExecutionOutcome outcome) {
+        return new Trace(encodedHarness, servers, outcome, events);
+    }
+}
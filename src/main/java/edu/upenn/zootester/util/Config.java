@@ -3,11 +3,19 @@ package edu.upenn.zootester.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Set;
+
 public class Config {
 
     private static final Logger LOG = LoggerFactory.getLogger(Config.class);
 
+    // The scenarios whose executions are run by TrueToThePaperScenario, the only one that unranks fault schedules
+    private static final Set<String> EXHAUSTIVE_SCENARIOS = Set.of("paper", "interesting", "harness");
+    // The scenarios whose executions can be run with a given fault schedule, e.g., for shrinking
+    private static final Set<String> SCHEDULE_SCENARIOS = Set.of("paper", "random");
+
     private String scenario = "divergence-2";
+    private int servers = 3;
     private int threads = 1;
     private int executions = 1;
     private int phases = 3;
@@ -16,6 +24,35 @@ public class Config {
     private int basePort = 11221;
     private Long seed = null;
     private int harnesses = 1;
+    private boolean checkpoint = false;
+    private int branching = 1;
+    private String timing = "default";
+    private String persistence = "disk";
+    private boolean fork = false;
+    private int workerPort = 0;
+    private int jobTimeout = 600;
+    private int standby = 0;
+    private int duration = 0;
+    private int requestTimeout = 1000;
+    private int phaseInterval = 5000;
+    private int faultMean = 2000;
+    private String faultDistribution = "exponential";
+    private String clock = "real";
+    private boolean guided = false;
+    private boolean exhaustive = false;
+    private int part = 0;
+    private int parts = 1;
+    private String explored = null;
+    private String journal = null;
+    private boolean resume = false;
+    private String harness = null;
+    private String schedule = null;
+    private String shrinkScenario = "paper";
+    private boolean proxied = false;
+    private boolean overwriteJournal = false;
+    private String traces = null;
+    private String corpus = null;
+    private String[] args = new String[0];
 
     private Config() {
     }
@@ -24,6 +61,10 @@ public class Config {
         return scenario;
     }
 
+    public int getServers() {
+        return servers;
+    }
+
     public int getThreads() {
         return threads;
     }
@@ -60,15 +101,140 @@ public class Config {
         return harnesses;
     }
 
+    public boolean useCheckpoint() {
+        return checkpoint;
+    }
+
+    public int getBranching() {
+        return branching;
+    }
+
+    public String getTiming() {
+        return timing;
+    }
+
+    public String getPersistence() {
+        return persistence;
+    }
+
+    public boolean useFork() {
+        return fork;
+    }
+
+    public boolean isWorker() {
+        return workerPort != 0;
+    }
+
+    public int getWorkerPort() {
+        return workerPort;
+    }
+
+    public int getJobTimeout() {
+        return jobTimeout;
+    }
+
+    public int getStandby() {
+        return standby;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public int getPhaseInterval() {
+        return phaseInterval;
+    }
+
+    public int getFaultMean() {
+        return faultMean;
+    }
+
+    public String getFaultDistribution() {
+        return faultDistribution;
+    }
+
+    public String getClock() {
+        return clock;
+    }
+
+    public boolean isGuided() {
+        return guided;
+    }
+
+    public boolean isExhaustive() {
+        return exhaustive;
+    }
+
+    public int getPart() {
+        return part;
+    }
+
+    public int getParts() {
+        return parts;
+    }
+
+    public String getExplored() {
+        return explored;
+    }
+
+    public String getJournal() {
+        return journal;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public String getHarness() {
+        return harness;
+    }
+
+    public String getSchedule() {
+        return schedule;
+    }
+
+    public boolean isOverwriteJournal() {
+        return overwriteJournal;
+    }
+
+    public boolean isProxied() {
+        return proxied;
+    }
+
+    public String getShrinkScenario() {
+        return shrinkScenario;
+    }
+
+    public String getTraces() {
+        return traces;
+    }
+
+    public String getCorpus() {
+        return corpus;
+    }
+
+    public String[] getArgs() {
+        return args.clone();
+    }
+
     public static Config parseArgs(final String[] args) throws ConfigException {
         try {
             final Config config = new Config();
+            config.args = args.clone();
             for (int i = 0; i < args.length; ++i) {
                 switch (args[i]) {
                     case "--scenario":
                     case "-s":
                         config.scenario = args[++i];
                         break;
+                    case "--servers":
+                    case "-n":
+                        config.servers = Integer.parseInt(args[++i]);
+                        break;
                     case "--threads":
                     case "-t":
                         config.threads = Integer.parseInt(args[++i]);
@@ -99,10 +265,110 @@ public class Config {
                     case "-h":
                         config.harnesses = Integer.parseInt(args[++i]);
                         break;
+                    case "--checkpoint":
+                        config.checkpoint = true;
+                        break;
+                    case "--branching":
+                    case "-b":
+                        config.branching = Integer.parseInt(args[++i]);
+                        break;
+                    case "--timing":
+                        config.timing = args[++i];
+                        break;
+                    case "--persistence":
+                        config.persistence = args[++i];
+                        break;
+                    case "--fork":
+                        config.fork = true;
+                        break;
+                    case "--workerPort":
+                        config.workerPort = Integer.parseInt(args[++i]);
+                        break;
+                    case "--jobTimeout":
+                        config.jobTimeout = Integer.parseInt(args[++i]);
+                        break;
+                    case "--standby":
+                        config.standby = Integer.parseInt(args[++i]);
+                        break;
+                    case "--duration":
+                    case "-d":
+                        config.duration = Integer.parseInt(args[++i]);
+                        break;
+                    case "--requestTimeout":
+                        config.requestTimeout = Integer.parseInt(args[++i]);
+                        break;
+                    case "--phaseInterval":
+                        config.phaseInterval = Integer.parseInt(args[++i]);
+                        break;
+                    case "--faultMean":
+                        config.faultMean = Integer.parseInt(args[++i]);
+                        break;
+                    case "--faultDistribution":
+                        config.faultDistribution = args[++i];
+                        break;
+                    case "--clock":
+                        config.clock = args[++i];
+                        break;
+                    case "--guided":
+                        config.guided = true;
+                        break;
+                    case "--exhaustive":
+                        config.exhaustive = true;
+                        break;
+                    case "--part":
+                        config.part = Integer.parseInt(args[++i]);
+                        break;
+                    case "--parts":
+                        config.parts = Integer.parseInt(args[++i]);
+                        break;
+                    case "--explored":
+                        config.explored = args[++i];
+                        break;
+                    case "--journal":
+                        config.journal = args[++i];
+                        break;
+                    case "--resume":
+                        config.resume = true;
+                        break;
+                    case "--harness":
+                        config.harness = args[++i];
+                        break;
+                    case "--schedule":
+                        config.schedule = args[++i];
+                        break;
+                    case "--overwriteJournal":
+                        config.overwriteJournal = true;
+                        break;
+                    case "--proxied":
+                        config.proxied = true;
+                        break;
+                    case "--shrinkScenario":
+                        config.shrinkScenario = args[++i];
+                        break;
+                    case "--traces":
+                        config.traces = args[++i];
+                        break;
+                    case "--corpus":
+                        config.corpus = args[++i];
+                        break;
                     default:
                         throw new Exception("Unrecognized argument " + args[i]);
                 }
             }
+            if (config.servers < 3) {
+                // A smaller ensemble loses its quorum with a single fault
+                throw new Exception("An ensemble needs at least 3 servers, not " + config.servers);
+            }
+            if (config.exhaustive && !EXHAUSTIVE_SCENARIOS.contains(config.scenario)) {
+                // Other scenarios would take the ranks as ordinary seeds
+                throw new Exception("Scenario " + config.scenario + " cannot enumerate fault schedules exhaustively");
+            }
+            if (!SCHEDULE_SCENARIOS.contains(config.shrinkScenario)) {
+                throw new Exception("Scenario " + config.shrinkScenario + " cannot run given fault schedules");
+            }
+            if (config.exhaustive && config.branching > 1) {
+                throw new Exception("Branching executions cannot enumerate fault schedules exhaustively");
+            }
             return config;
         } catch (final Exception e) {
             LOG.error("Error while parsing the arguments", e);
@@ -0,0 +1,301 @@
+package edu.upenn.zootester.worker;
+
+import edu.upenn.zootester.ZooTester;
+import edu.upenn.zootester.ensemble.ZKHelper;
+import edu.upenn.zootester.fault.FaultScheduleEnumerator;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import edu.upenn.zootester.scenario.TrueToThePaperScenario;
+import edu.upenn.zootester.trace.TraceArchive;
+import edu.upenn.zootester.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/***
+ * Runs a campaign of executions over a list of harnesses. Each of config.getThreads() slots runs executions
+ * on its own ensemble, in this JVM or in a forked worker JVM, and pulls the next (harness, seed) task from a
+ * shared queue as soon as it's done with the previous one, so there's no barrier between harnesses.
+ * <p>
+ * Without a duration, each harness gets config.getThreads() * config.getExecutions() executions. With a
+ * duration, the harnesses are repeated in the same way until the time is up, and executions that are still
+ * running at that point are finished.
+ * <p>
+ * In exhaustive mode, each harness instead gets one execution for every fault schedule, whose rank is passed
+ * as the seed. With config.getParts() > 1, only the config.getPart()-th of the ranges into which the ranks
+ * are split is executed, so that separate campaigns can share the exploration.
+ * <p>
+ * With a journal, every finished execution is recorded, and with config.isResume(), a campaign that was
+ * interrupted continues with the same seed and harnesses, skipping the executions recorded in the journal.
+ * <p>
+ * With a regression corpus, the traces in the corpus are replayed before any other execution, so that the
+ * campaign first reports whether the failures found earlier still occur.
+ */
+public class CampaignExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CampaignExecutor.class);
+
+    // Each worker leases ports for its ensemble starting from its own base port, since port probing
+    // cannot coordinate between processes.
+    private static final int BASE_PORT_STRIDE = 1000;
+
+    private final Config config;
+    private final List<Harness> harnesses;
+    private final List<Map<ExecutionOutcome, Integer>> outcomes = new ArrayList<>();
+    private final Random random = new Random();
+    private final int executionsPerHarness;
+    private final long deadline;
+    private final List<long[]> rankRanges = new ArrayList<>();
+    private final CampaignJournal journal;
+    private final List<Path> corpus;
+    private final Map<ExecutionOutcome, Integer> corpusOutcomes = new EnumMap<>(ExecutionOutcome.class);
+
+    // The number of times that each (harness, seed) task has been recorded in the journal and has yet to be
+    // skipped, guarded by this
+    private final Map<String, Integer> journaledTasks = new HashMap<>();
+
+    // Guarded by this
+    private int nextTrace = 0;
+    private int nextHarness = 0;
+    private long nextExecution = 0;
+
+    public CampaignExecutor(final Config config, final List<Harness> harnesses) throws IOException {
+        this.config = config;
+        long seed = config.hasSeed() ? config.getSeed() : random.nextLong();
+        if (config.getJournal() == null) {
+            this.journal = null;
+        } else if (config.isResume() && Files.exists(Path.of(config.getJournal()))) {
+            this.journal = CampaignJournal.resume(Path.of(config.getJournal()), config.getScenario(), planOf(config));
+            seed = journal.getSeed();
+        } else {
+            this.journal = CampaignJournal.create(Path.of(config.getJournal()), config.getScenario(),
+                    planOf(config), seed, harnesses, config.isOverwriteJournal());
+        }
+        this.harnesses = journal == null ? harnesses : journal.getHarnesses();
+        this.corpus = config.getCorpus() == null ? List.of() : TraceArchive.list(Path.of(config.getCorpus()));
+        for (int i = 0; i < this.harnesses.size(); ++i) {
+            outcomes.add(new EnumMap<>(ExecutionOutcome.class));
+        }
+        if (journal != null) {
+            for (final CampaignJournal.Record record : journal.getRecords()) {
+                journaledTasks.merge(taskKey(record.harness, record.seed), 1, Integer::sum);
+                outcomes.get(record.harness).merge(record.outcome, 1, Integer::sum);
+            }
+        }
+        this.executionsPerHarness = config.getThreads() * config.getExecutions();
+        this.deadline = config.getDuration() > 0 ? System.currentTimeMillis() + config.getDuration() * 1000L
+                : Long.MAX_VALUE;
+
+        if (config.isExhaustive()) {
+            for (final Harness harness : this.harnesses) {
+                final FaultScheduleEnumerator enumerator = TrueToThePaperScenario.enumerateSchedules(harness, config);
+                final long[] range = enumerator.partition(config.getPart(), config.getParts());
+                LOG.info("Exploring schedules {} to {} of {} of {}", range[0], range[1], enumerator.size(), harness);
+                rankRanges.add(range);
+            }
+            this.nextExecution = rankRanges.isEmpty() ? 0 : rankRanges.get(0)[0];
+        }
+
+        random.setSeed(seed);
+        LOG.info("Initialized campaign with {} harnesses, {} regression traces and {} slots: seed = {}",
+                this.harnesses.size(), corpus.size(), config.getThreads(), seed);
+    }
+
+    /***
+     * Describes the options besides the seed and the harnesses that determine the tasks of the campaign.
+     */
+    private static String planOf(final Config config) {
+        return "threads=" + config.getThreads() + " executions=" + config.getExecutions() + " exhaustive="
+                + config.isExhaustive() + " part=" + config.getPart() + "/" + config.getParts();
+    }
+
+    private static String taskKey(final int harness, final long seed) {
+        return harness + ":" + seed;
+    }
+
+    private static class Task {
+
+        private final int harness;
+        private final long seed;
+
+        Task(final int harness, final long seed) {
+            this.harness = harness;
+            this.seed = seed;
+        }
+    }
+
+    /***
+     * @return The next trace of the corpus to replay, or null if all of them have been taken
+     */
+    private synchronized Path nextTrace() {
+        return nextTrace < corpus.size() ? corpus.get(nextTrace++) : null;
+    }
+
+    /***
+     * @return The next task that hasn't been recorded in the journal, or null if the campaign is over
+     */
+    private synchronized Task nextTask() {
+        Task task;
+        while ((task = nextPlannedTask()) != null) {
+            final String key = taskKey(task.harness, task.seed);
+            final Integer count = journaledTasks.get(key);
+            if (count == null) {
+                return task;
+            }
+            if (count == 1) {
+                journaledTasks.remove(key);
+            } else {
+                journaledTasks.put(key, count - 1);
+            }
+        }
+        return null;
+    }
+
+    private Task nextPlannedTask() {
+        if (System.currentTimeMillis() >= deadline) {
+            return null;
+        }
+        if (config.isExhaustive()) {
+            return nextExhaustiveTask();
+        }
+        if (nextExecution == executionsPerHarness) {
+            nextExecution = 0;
+            ++nextHarness;
+        }
+        if (nextHarness == harnesses.size()) {
+            if (deadline == Long.MAX_VALUE) {
+                return null;
+            }
+            nextHarness = 0;
+        }
+        ++nextExecution;
+        return new Task(nextHarness, config.hasSeed() ? config.getSeed() : random.nextLong());
+    }
+
+    private Task nextExhaustiveTask() {
+        while (nextHarness < harnesses.size() && nextExecution >= rankRanges.get(nextHarness)[1]) {
+            ++nextHarness;
+            if (nextHarness < harnesses.size()) {
+                nextExecution = rankRanges.get(nextHarness)[0];
+            }
+        }
+        if (nextHarness == harnesses.size()) {
+            return null;
+        }
+        return new Task(nextHarness, nextExecution++);
+    }
+
+    /***
+     * Creates the slot with the given id, which runs its executions in this JVM, or in a forked worker JVM if
+     * config.useFork().
+     */
+    static ExecutionSlot createSlot(final Config config, final int id) {
+        if (!config.useFork()) {
+            return new LocalSlot(config);
+        }
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ZooTester.class.getName());
+        for (final String arg : config.getArgs()) {
+            if (!arg.equals("--fork")) {
+                command.add(arg);
+            }
+        }
+        command.add("--basePort");
+        command.add(Integer.toString(config.getBasePort() + (id + 1) * BASE_PORT_STRIDE));
+        // Workers take the profile that this JVM is using, so that they don't repeat the calibration
+        command.add("--timing");
+        command.add(ZKHelper.getTimingProfile().encode());
+        return new ForkedWorker(id, command, config.getJobTimeout() * 1000);
+    }
+
+    private void runSlot(final int id) {
+        final ExecutionSlot slot = createSlot(config, id);
+        try {
+            Path trace;
+            while ((trace = nextTrace()) != null) {
+                LOG.info("Replaying regression trace {}", trace);
+                final ExecutionOutcome outcome = slot.replay(trace);
+                LOG.info("Finished replay of {}: outcome = {}", trace, outcome);
+                synchronized (corpusOutcomes) {
+                    corpusOutcomes.merge(outcome, 1, Integer::sum);
+                }
+            }
+
+            Task task;
+            while ((task = nextTask()) != null) {
+                final Harness harness = harnesses.get(task.harness);
+                LOG.info("Starting execution with {}: seed = {}", harness, task.seed);
+                final ExecutionOutcome outcome = slot.run(harness, task.seed);
+                LOG.info("Finished execution: seed = {}, outcome = {}", task.seed, outcome);
+                synchronized (outcomes) {
+                    outcomes.get(task.harness).merge(outcome, 1, Integer::sum);
+                }
+                if (journal != null) {
+                    try {
+                        journal.record(task.harness, task.seed, outcome);
+                    } catch (final IOException e) {
+                        LOG.error("Couldn't record the execution in the journal", e);
+                    }
+                }
+            }
+        } finally {
+            slot.close();
+        }
+    }
+
+    public void execute() throws InterruptedException, IOException {
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < config.getThreads(); ++i) {
+            final int id = i;
+            final Thread thread = new Thread(() -> runSlot(id), "Slot-" + id);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (final var thread : threads) {
+                thread.join();
+            }
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+
+        if (!corpus.isEmpty()) {
+            LOG.info("Finished replays of the regression corpus: \tFailed assertions: {}\tFailed otherwise: {}"
+                            + "\tTotal: {}",
+                    corpusOutcomes.getOrDefault(ExecutionOutcome.FAILED_ASSERTION, 0),
+                    corpusOutcomes.getOrDefault(ExecutionOutcome.FAILED_OTHERWISE, 0), corpus.size());
+        }
+        final Map<ExecutionOutcome, Integer> totals = new EnumMap<>(ExecutionOutcome.class);
+        for (int i = 0; i < harnesses.size(); ++i) {
+            final Map<ExecutionOutcome, Integer> harnessOutcomes = outcomes.get(i);
+            LOG.info("Finished executions with {}: \tFailed assertions: {}\tFailed otherwise: {}\tSkipped: {}"
+                            + "\tTotal: {}",
+                    harnesses.get(i), harnessOutcomes.getOrDefault(ExecutionOutcome.FAILED_ASSERTION, 0),
+                    harnessOutcomes.getOrDefault(ExecutionOutcome.FAILED_OTHERWISE, 0),
+                    harnessOutcomes.getOrDefault(ExecutionOutcome.SKIPPED, 0),
+                    harnessOutcomes.values().stream().mapToInt(Integer::intValue).sum());
+            harnessOutcomes.forEach((outcome, count) -> totals.merge(outcome, count, Integer::sum));
+        }
+        LOG.info("Finished executions: \tFailed assertions: {}\tFailed otherwise: {}\tSkipped: {}\tTotal: {}",
+                totals.getOrDefault(ExecutionOutcome.FAILED_ASSERTION, 0),
+                totals.getOrDefault(ExecutionOutcome.FAILED_OTHERWISE, 0),
+                totals.getOrDefault(ExecutionOutcome.SKIPPED, 0),
+                totals.values().stream().mapToInt(Integer::intValue).sum());
+    }
+}
@@ -0,0 +1,170 @@
+package edu.upenn.zootester.worker;
+
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/***
+ * An append-only journal of a campaign, from which an interrupted campaign can be resumed. The journal starts
+ * with the campaign's seed, plan and harnesses, which determine the campaign's tasks, followed by one line for
+ * every finished execution:
+ * <pre>
+ * campaign &lt;scenario&gt; &lt;seed&gt; &lt;plan&gt;
+ * harness &lt;encoded harness&gt;
+ * execution &lt;scenario&gt; &lt;encoded harness&gt; &lt;seed&gt; &lt;outcome&gt;
+ * </pre>
+ * The fields are separated by tabs. Each line is flushed as soon as it's written, so at most the last line is
+ * lost or torn when the JVM dies, and torn lines are ignored when the journal is read.
+ * <p>
+ * The plan consists of the options other than the seed that determine which tasks the campaign runs, and a
+ * campaign can only be resumed with the same plan.
+ */
+class CampaignJournal implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CampaignJournal.class);
+
+    private final String scenario;
+    private final long seed;
+    private final List<Harness> harnesses;
+    private final List<Record> records;
+    private final BufferedWriter writer;
+
+    static class Record {
+
+        final int harness;
+        final long seed;
+        final ExecutionOutcome outcome;
+
+        Record(final int harness, final long seed, final ExecutionOutcome outcome) {
+            this.harness = harness;
+            this.seed = seed;
+            this.outcome = outcome;
+        }
+    }
+
+    private CampaignJournal(final String scenario, final long seed, final List<Harness> harnesses,
+                            final List<Record> records, final BufferedWriter writer) {
+        this.scenario = scenario;
+        this.seed = seed;
+        this.harnesses = harnesses;
+        this.records = records;
+        this.writer = writer;
+    }
+
+    /***
+     * Starts a new journal in the file.
+     *
+     * @param overwrite Whether to replace a previous journal in the file
+     * @throws IOException If the file holds a journal that isn't to be overwritten
+     */
+    static CampaignJournal create(final Path file, final String scenario, final String plan, final long seed,
+                                  final List<Harness> harnesses, final boolean overwrite) throws IOException {
+        if (!overwrite && Files.exists(file) && Files.size(file) > 0) {
+            throw new IOException("The journal " + file + " already exists. Resume it with --resume, or replace it"
+                    + " with --overwriteJournal");
+        }
+        final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        writer.write("campaign\t" + scenario + '\t' + seed + '\t' + plan + '\n');
+        for (final Harness harness : harnesses) {
+            writer.write("harness\t" + harness.encode() + '\n');
+        }
+        writer.flush();
+        return new CampaignJournal(scenario, seed, harnesses, new ArrayList<>(), writer);
+    }
+
+    /***
+     * Reads the journal in the file, and opens it for appending the remaining executions.
+     *
+     * @throws IOException If the journal is missing its header or belongs to a campaign of another scenario or
+     *                     plan
+     */
+    static CampaignJournal resume(final Path file, final String scenario, final String plan) throws IOException {
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            throw new IOException("The journal " + file + " is empty");
+        }
+        final String[] header = lines.get(0).split("\t");
+        if (header.length != 4 || !header[0].equals("campaign")) {
+            throw new IOException("The journal " + file + " doesn't start with a campaign");
+        }
+        if (!header[1].equals(scenario)) {
+            throw new IOException("The journal " + file + " belongs to a campaign of scenario " + header[1]);
+        }
+        if (!header[3].equals(plan)) {
+            throw new IOException("The journal " + file + " belongs to a campaign with " + header[3]
+                    + ", which plans other tasks than " + plan);
+        }
+        final long seed = Long.parseLong(header[2]);
+
+        final List<Harness> harnesses = new ArrayList<>();
+        final List<String> encodedHarnesses = new ArrayList<>();
+        final List<Record> records = new ArrayList<>();
+        for (final String line : lines.subList(1, lines.size())) {
+            final String[] fields = line.split("\t");
+            try {
+                if (fields[0].equals("harness") && fields.length == 2) {
+                    harnesses.add(Harness.decode(fields[1]));
+                    encodedHarnesses.add(fields[1]);
+                } else if (fields[0].equals("execution") && fields.length == 5 && fields[1].equals(scenario)) {
+                    final int harness = encodedHarnesses.indexOf(fields[2]);
+                    if (harness < 0) {
+                        throw new IllegalArgumentException("Unknown harness " + fields[2]);
+                    }
+                    records.add(new Record(harness, Long.parseLong(fields[3]), ExecutionOutcome.valueOf(fields[4])));
+                } else {
+                    throw new IllegalArgumentException("Unknown record");
+                }
+            } catch (final IllegalArgumentException e) {
+                LOG.warn("Ignoring malformed line in the journal {}: {}", file, line, e);
+            }
+        }
+
+        final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        final byte[] content = Files.readAllBytes(file);
+        if (content.length > 0 && content[content.length - 1] != '\n') {
+            // Terminate the torn last line, so that it doesn't swallow the next record
+            writer.write('\n');
+            writer.flush();
+        }
+        LOG.info("Resuming the campaign of the journal {} after {} executions", file, records.size());
+        return new CampaignJournal(scenario, seed, harnesses, records, writer);
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    List<Harness> getHarnesses() {
+        return Collections.unmodifiableList(harnesses);
+    }
+
+    /***
+     * @return The executions that were recorded before the journal was resumed
+     */
+    List<Record> getRecords() {
+        return Collections.unmodifiableList(records);
+    }
+
+    synchronized void record(final int harness, final long seed, final ExecutionOutcome outcome)
+            throws IOException {
+        writer.write("execution\t" + scenario + '\t' + harnesses.get(harness).encode() + '\t' + seed + '\t'
+                + outcome + '\n');
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,31 @@
+package edu.upenn.zootester.worker;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+
+import java.nio.file.Path;
+
+/***
+ * Runs executions one at a time on its own ensemble, either in this JVM or in a forked worker JVM.
+ */
+interface ExecutionSlot {
+
+    ExecutionOutcome run(Harness harness, long seed);
+
+    /***
+     * Runs an execution of the harness with the given fault schedule, which requires a scenario that
+     * implements {@link edu.upenn.zootester.scenario.ScheduleScenario}.
+     */
+    ExecutionOutcome run(Harness harness, FaultSchedule schedule);
+
+    /***
+     * Replays the trace in the given file with a {@link edu.upenn.zootester.scenario.TraceReplayer}.
+     */
+    ExecutionOutcome replay(Path trace);
+
+    /***
+     * Releases the slot's ensemble. Called once no more executions will be run.
+     */
+    void close();
+}
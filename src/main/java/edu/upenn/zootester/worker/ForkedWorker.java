@@ -0,0 +1,143 @@
+package edu.upenn.zootester.worker;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * The coordinator's handle on a single worker JVM, which runs its own ensemble. Jobs are sent to the worker
+ * over a local socket, so that ensembles don't share a heap, GC pauses or static ZooKeeper state, and a hung
+ * worker is killed instead of stalling the whole run. The worker is spawned lazily on the first job and
+ * respawned on the job after it died or was killed.
+ */
+class ForkedWorker implements ExecutionSlot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ForkedWorker.class);
+
+    private static final int CONNECT_TIMEOUT = 60_000;
+
+    private final int id;
+    private final List<String> command;
+    private final int timeoutMillis;
+
+    private Process process = null;
+    private Socket socket = null;
+    private BufferedReader reader = null;
+    private PrintWriter writer = null;
+
+    ForkedWorker(final int id, final List<String> command, final int timeoutMillis) {
+        this.id = id;
+        this.command = command;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    private void start() throws IOException {
+        try (final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            serverSocket.setSoTimeout(CONNECT_TIMEOUT);
+            final List<String> workerCommand = new ArrayList<>(command);
+            workerCommand.add("--workerPort");
+            workerCommand.add(Integer.toString(serverSocket.getLocalPort()));
+            process = new ProcessBuilder(workerCommand).inheritIO().start();
+            LOG.info("Started worker {} with pid {}", id, process.pid());
+            socket = serverSocket.accept();
+        }
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+    }
+
+    @Override
+    public ExecutionOutcome run(final Harness harness, final long seed) {
+        return runJob("RUN " + harness.encode() + " " + seed);
+    }
+
+    @Override
+    public ExecutionOutcome run(final Harness harness, final FaultSchedule schedule) {
+        return runJob("SCHEDULE " + harness.encode() + " " + schedule.encode());
+    }
+
+    @Override
+    public ExecutionOutcome replay(final Path trace) {
+        return runJob("REPLAY " + trace.toAbsolutePath());
+    }
+
+    /***
+     * Runs a job on the worker and waits at most timeoutMillis for its outcome. A worker that fails to answer
+     * in time, or that dies, is killed and the job counts as failed.
+     */
+    private ExecutionOutcome runJob(final String job) {
+        try {
+            if (process == null) {
+                start();
+            }
+            socket.setSoTimeout(timeoutMillis);
+            writer.println(job);
+            final String reply = reader.readLine();
+            if (reply == null) {
+                throw new EOFException("Worker " + id + " closed the connection");
+            }
+            final String[] parts = reply.split(" ");
+            if (parts.length != 2 || !parts[0].equals("DONE")) {
+                throw new IOException("Unexpected reply from worker " + id + ": " + reply);
+            }
+            return ExecutionOutcome.valueOf(parts[1]);
+        } catch (final IOException e) {
+            LOG.error("Job on worker {} failed: {}", id, job, e);
+            kill();
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        }
+    }
+
+    /***
+     * Asks the worker to tear down its ensemble and exit, and kills it if it doesn't do so in time.
+     */
+    @Override
+    public void close() {
+        if (process == null) {
+            return;
+        }
+        writer.println("EXIT");
+        try {
+            if (!process.waitFor(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Worker {} did not exit in time", id);
+            }
+        } catch (final InterruptedException e) {
+            LOG.warn("Interrupted from waiting on worker {}", id);
+        }
+        kill();
+    }
+
+    private void kill() {
+        if (process == null) {
+            return;
+        }
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (final IOException e) {
+                LOG.debug("Error while closing the socket of worker {}", id, e);
+            }
+        }
+        process.destroyForcibly();
+        try {
+            process.waitFor();
+        } catch (final InterruptedException e) {
+            LOG.warn("Interrupted from waiting on worker {}", id);
+        }
+        process = null;
+        socket = null;
+        reader = null;
+        writer = null;
+    }
+}
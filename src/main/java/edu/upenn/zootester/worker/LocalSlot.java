@@ -0,0 +1,120 @@
+package edu.upenn.zootester.worker;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import edu.upenn.zootester.scenario.HarnessScenario;
+import edu.upenn.zootester.scenario.ScheduleScenario;
+import edu.upenn.zootester.scenario.TraceReplayer;
+import edu.upenn.zootester.trace.Trace;
+import edu.upenn.zootester.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/***
+ * Runs executions in this JVM. The scenario, and with it the ensemble, is kept between executions of the
+ * same harness, and so is the replayer between replays of traces of the same harness.
+ */
+class LocalSlot implements ExecutionSlot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalSlot.class);
+
+    private final Config config;
+
+    private String encodedHarness = null;
+    private HarnessScenario scenario = null;
+    private TraceReplayer replayer = null;
+
+    LocalSlot(final Config config) {
+        this.config = config;
+    }
+
+    @Override
+    public ExecutionOutcome run(final Harness harness, final long seed) {
+        try {
+            return scenarioFor(harness).execute(seed);
+        } catch (final Exception e) {
+            LOG.error("Exception while initializing scenario", e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        }
+    }
+
+    @Override
+    public ExecutionOutcome run(final Harness harness, final FaultSchedule schedule) {
+        final HarnessScenario scenario;
+        try {
+            scenario = scenarioFor(harness);
+        } catch (final Exception e) {
+            LOG.error("Exception while initializing scenario", e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        }
+        if (!(scenario instanceof ScheduleScenario)) {
+            LOG.error("Scenario {} cannot run given fault schedules", config.getScenario());
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        }
+        return ((ScheduleScenario) scenario).execute(schedule);
+    }
+
+    @Override
+    public ExecutionOutcome replay(final Path file) {
+        final Trace trace;
+        final TraceReplayer replayer;
+        try {
+            trace = Trace.load(file);
+            replayer = replayerFor(Harness.decode(trace.getEncodedHarness()));
+        } catch (final Exception e) {
+            LOG.error("Exception while initializing the replay of {}", file, e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        }
+        try {
+            return replayer.replay(trace);
+        } catch (final IllegalArgumentException e) {
+            LOG.error("Cannot replay {}", file, e);
+            return ExecutionOutcome.FAILED_OTHERWISE;
+        }
+    }
+
+    private HarnessScenario scenarioFor(final Harness harness) throws Exception {
+        final String encodedHarness = harness.encode();
+        if (scenario == null || !encodedHarness.equals(this.encodedHarness)) {
+            close();
+            final HarnessScenario newScenario = HarnessScenario.forConfig(config, harness);
+            newScenario.init(config);
+            scenario = newScenario;
+            this.encodedHarness = encodedHarness;
+        }
+        return scenario;
+    }
+
+    private TraceReplayer replayerFor(final Harness harness) throws IOException {
+        final String encodedHarness = harness.encode();
+        if (replayer == null || !encodedHarness.equals(this.encodedHarness)) {
+            close();
+            final TraceReplayer newReplayer = new TraceReplayer(harness);
+            newReplayer.init(config);
+            replayer = newReplayer;
+            this.encodedHarness = encodedHarness;
+        }
+        return replayer;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (scenario != null) {
+                scenario.tearDown();
+            }
+            if (replayer != null) {
+                replayer.tearDown();
+            }
+        } catch (final IOException e) {
+            LOG.error("Exception while tearing down scenario", e);
+        }
+        scenario = null;
+        replayer = null;
+        encodedHarness = null;
+    }
+}
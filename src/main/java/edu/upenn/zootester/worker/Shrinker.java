@@ -0,0 +1,207 @@
+package edu.upenn.zootester.worker;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.fault.PhaseFaults;
+import edu.upenn.zootester.harness.EmptyPhase;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.harness.Phase;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import edu.upenn.zootester.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+
+/***
+ * Shrinks a failing execution, given by its harness and fault schedule, to a smaller one that still fails.
+ * In every round, the shrinker tries all candidates that are one step smaller than the current execution,
+ * i.e., that lack one of its phases, requests or faults, and continues with the first candidate in that
+ * order that still fails an assertion. It stops when no candidate fails, so the result is minimal in the
+ * sense that removing any single phase, request or fault makes the failure disappear.
+ * <p>
+ * The candidates of a round are checked in parallel on config.getThreads() slots, in batches, so that the
+ * first failing candidate of a batch can be taken without waiting for the rest of the round. Since failures
+ * often depend on timing, a candidate is run up to config.getExecutions() times until it fails.
+ */
+public class Shrinker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Shrinker.class);
+
+    private final Config config;
+    private final BlockingQueue<ExecutionSlot> slots = new LinkedBlockingQueue<>();
+    private final ExecutorService executor;
+
+    public Shrinker(final Config config) {
+        this.config = config;
+        for (int i = 0; i < config.getThreads(); ++i) {
+            slots.add(CampaignExecutor.createSlot(config, i));
+        }
+        this.executor = Executors.newFixedThreadPool(config.getThreads());
+    }
+
+    /***
+     * An execution to check, with the step that produced it from the previous one.
+     */
+    public static class Candidate {
+
+        private final Harness harness;
+        private final FaultSchedule schedule;
+        private final String step;
+
+        Candidate(final Harness harness, final FaultSchedule schedule, final String step) {
+            this.harness = harness;
+            this.schedule = schedule;
+            this.step = step;
+        }
+
+        public Harness getHarness() {
+            return harness;
+        }
+
+        public FaultSchedule getSchedule() {
+            return schedule;
+        }
+
+        /***
+         * The number of phases, requests and faults of the execution, which the shrinker minimizes.
+         */
+        int size() {
+            int size = harness.getPhases().size();
+            for (final Phase phase : harness.getPhases()) {
+                size += phase.match(emptyPhase -> 0, requestPhase -> 1);
+            }
+            for (final PhaseFaults phaseFaults : schedule.getPhaseFaults()) {
+                size += phaseFaults.getServersToCrash().size();
+            }
+            return size;
+        }
+    }
+
+    /***
+     * @return The smallest failing execution found, or null if the given execution doesn't fail
+     */
+    public Candidate shrink(final Harness harness, final FaultSchedule schedule)
+            throws InterruptedException, ExecutionException {
+        if (harness.getPhases().size() != schedule.size()) {
+            throw new IllegalArgumentException("The schedule " + schedule + " doesn't match the phases of " + harness);
+        }
+        try {
+            Candidate current = new Candidate(harness, schedule, "original");
+            if (!fails(current)) {
+                LOG.warn("The execution doesn't fail: harness = {}, schedule = {}", harness.encode(), schedule.encode());
+                return null;
+            }
+            int round = 0;
+            Candidate next;
+            while ((next = firstFailing(reductions(current))) != null) {
+                ++round;
+                LOG.info("Shrinking round {}: {}, size {} -> {}", round, next.step, current.size(), next.size());
+                current = next;
+            }
+            LOG.info("Shrunk the execution from size {} to size {} in {} rounds",
+                    new Candidate(harness, schedule, "original").size(), current.size(), round);
+            return current;
+        } finally {
+            executor.shutdownNow();
+            for (final ExecutionSlot slot : slots) {
+                slot.close();
+            }
+        }
+    }
+
+    private Candidate firstFailing(final List<Candidate> candidates) throws InterruptedException, ExecutionException {
+        for (int from = 0; from < candidates.size(); from += config.getThreads()) {
+            final List<Candidate> batch = candidates.subList(from, Math.min(from + config.getThreads(),
+                    candidates.size()));
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (final Candidate candidate : batch) {
+                results.add(executor.submit(() -> fails(candidate)));
+            }
+            for (int i = 0; i < batch.size(); ++i) {
+                if (results.get(i).get()) {
+                    // Let the rest of the batch finish, so that their slots are free for the next round
+                    for (final Future<Boolean> result : results) {
+                        result.get();
+                    }
+                    return batch.get(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean fails(final Candidate candidate) throws InterruptedException {
+        final ExecutionSlot slot = slots.take();
+        try {
+            for (int i = 0; i < config.getExecutions(); ++i) {
+                final ExecutionOutcome outcome = slot.run(candidate.harness, candidate.schedule);
+                LOG.info("Checked {}: harness = {}, schedule = {}, outcome = {}",
+                        candidate.step, candidate.harness.encode(), candidate.schedule.encode(), outcome);
+                if (outcome == ExecutionOutcome.FAILED_ASSERTION) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            slots.add(slot);
+        }
+    }
+
+    /***
+     * Lists the executions that are one step smaller than the given one, with the largest steps first:
+     * removing a phase, then turning a request phase into an empty phase, and then removing a single fault.
+     */
+    static List<Candidate> reductions(final Candidate candidate) {
+        final List<Phase> phases = candidate.harness.getPhases();
+        final List<PhaseFaults> phaseFaults = candidate.schedule.getPhaseFaults();
+        final int numKeys = candidate.harness.getNumKeys();
+        final List<Candidate> reductions = new ArrayList<>();
+
+        // A harness keeps at least one phase
+        for (int i = 0; phases.size() > 1 && i < phases.size(); ++i) {
+            final List<Phase> newPhases = new ArrayList<>(phases);
+            final List<PhaseFaults> newFaults = new ArrayList<>(phaseFaults);
+            newPhases.remove(i);
+            newFaults.remove(i);
+            reductions.add(new Candidate(new Harness(newPhases, numKeys), new FaultSchedule(newFaults),
+                    "remove phase " + i));
+        }
+
+        for (int i = 0; i < phases.size(); ++i) {
+            if (phases.get(i).match(emptyPhase -> true, requestPhase -> false)) {
+                continue;
+            }
+            final List<Phase> newPhases = new ArrayList<>(phases);
+            final List<PhaseFaults> newFaults = new ArrayList<>(phaseFaults);
+            newPhases.set(i, new EmptyPhase());
+            // Empty phases don't crash servers later, as there is no request to crash them before
+            newFaults.set(i, new PhaseFaults(phaseFaults.get(i).getServersToCrash(), List.of()));
+            reductions.add(new Candidate(new Harness(newPhases, numKeys), new FaultSchedule(newFaults),
+                    "remove the request of phase " + i));
+        }
+
+        for (int i = 0; i < phaseFaults.size(); ++i) {
+            for (final int server : phaseFaults.get(i).getServersToCrash()) {
+                final List<PhaseFaults> newFaults = new ArrayList<>(phaseFaults);
+                newFaults.set(i, new PhaseFaults(
+                        without(phaseFaults.get(i).getServersToCrash(), server),
+                        without(phaseFaults.get(i).getServersToCrashLater(), server)));
+                reductions.add(new Candidate(candidate.harness, new FaultSchedule(newFaults),
+                        "remove the crash of server " + server + " in phase " + i));
+            }
+        }
+        return reductions;
+    }
+
+    private static List<Integer> without(final List<Integer> servers, final int server) {
+        return servers.stream().filter(s -> s != server).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,66 @@
+package edu.upenn.zootester.worker;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/***
+ * The main loop of a worker JVM. It connects back to the coordinator and runs the jobs it receives, one at
+ * a time, on a {@link LocalSlot}.
+ */
+public class Worker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Worker.class);
+
+    private final Config config;
+    private final LocalSlot slot;
+
+    public Worker(final Config config) {
+        this.config = config;
+        this.slot = new LocalSlot(config);
+    }
+
+    public void run() throws IOException {
+        try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), config.getWorkerPort());
+             final BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             final PrintWriter writer = new PrintWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split(" ");
+                switch (parts[0]) {
+                    case "RUN":
+                        final long seed = Long.parseLong(parts[2]);
+                        LOG.info("Starting job: harness = {}, seed = {}", parts[1], seed);
+                        writer.println("DONE " + slot.run(Harness.decode(parts[1]), seed));
+                        break;
+                    case "SCHEDULE":
+                        LOG.info("Starting job: harness = {}, schedule = {}", parts[1], parts[2]);
+                        writer.println("DONE " + slot.run(Harness.decode(parts[1]), FaultSchedule.decode(parts[2])));
+                        break;
+                    case "REPLAY":
+                        // The path may contain spaces
+                        final String trace = line.substring("REPLAY ".length());
+                        LOG.info("Starting job: trace = {}", trace);
+                        writer.println("DONE " + slot.replay(Path.of(trace)));
+                        break;
+                    case "EXIT":
+                        return;
+                    default:
+                        throw new IOException("Unknown command " + line);
+                }
+            }
+        } finally {
+            slot.close();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package edu.upenn.zootester.ensemble;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class BipartiteMatcherTest {
+
+    private static int bruteForceMaximum(final boolean[][] canMatch, final int left, final boolean[] usedRight) {
+        if (left == canMatch.length) {
+            return 0;
+        }
+        int best = bruteForceMaximum(canMatch, left + 1, usedRight);
+        for (int right = 0; right < usedRight.length; ++right) {
+            if (canMatch[left][right] && !usedRight[right]) {
+                usedRight[right] = true;
+                best = Math.max(best, 1 + bruteForceMaximum(canMatch, left + 1, usedRight));
+                usedRight[right] = false;
+            }
+        }
+        return best;
+    }
+
+    private static void assertValidMatching(final boolean[][] canMatch, final int[] matchOfLeft, final int size) {
+        final boolean[] usedRight = new boolean[canMatch.length];
+        int matched = 0;
+        for (int left = 0; left < matchOfLeft.length; ++left) {
+            final int right = matchOfLeft[left];
+            if (right >= 0) {
+                Assert.assertTrue("Only allowed pairs should be matched", canMatch[left][right]);
+                Assert.assertFalse("Right vertices should be matched at most once", usedRight[right]);
+                usedRight[right] = true;
+                ++matched;
+            }
+        }
+        Assert.assertEquals(size, matched);
+    }
+
+    @Test
+    public void testAgainstBruteForce() {
+        final Random random = new Random(42);
+        for (int trial = 0; trial < 500; ++trial) {
+            final int n = 1 + random.nextInt(7);
+            final boolean[][] canMatch = new boolean[n][n];
+            for (final boolean[] row : canMatch) {
+                for (int j = 0; j < n; ++j) {
+                    row[j] = random.nextDouble() < 0.4;
+                }
+            }
+            final int[] matchOfLeft = new int[n];
+            Arrays.fill(matchOfLeft, -1);
+            final int size = BipartiteMatcher.maximumMatching(canMatch, n, matchOfLeft);
+            Assert.assertEquals(bruteForceMaximum(canMatch, 0, new boolean[n]), size);
+            assertValidMatching(canMatch, matchOfLeft, size);
+        }
+    }
+
+    @Test
+    public void testKeepsInitiallyMatched() {
+        // Servers 0 and 1 are matched to clients 0 and 1. Server 2 lost its client 2, and can only talk to
+        // client 0, so server 0 has to move to client 2.
+        final boolean[][] canMatch = {
+                {true, false, true},
+                {false, true, false},
+                {true, false, false}
+        };
+        final int[] matchOfLeft = {0, 1, 2};
+        Assert.assertEquals(3, BipartiteMatcher.maximumMatching(canMatch, 3, matchOfLeft));
+        Assert.assertArrayEquals(new int[]{2, 1, 0}, matchOfLeft);
+    }
+
+    @Test
+    public void testPerfectMatchingImpossible() {
+        final boolean[][] canMatch = {
+                {true, false, false},
+                {true, false, false},
+                {false, true, true}
+        };
+        final int[] matchOfLeft = {-1, -1, -1};
+        Assert.assertEquals(2, BipartiteMatcher.maximumMatching(canMatch, 3, matchOfLeft));
+        assertValidMatching(canMatch, matchOfLeft, 2);
+    }
+}
@@ -0,0 +1,42 @@
+package edu.upenn.zootester.ensemble;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class DirectoryTrashTest {
+
+    private static long countEntries(final Path dir) throws IOException {
+        try (final Stream<Path> paths = Files.list(dir)) {
+            return paths.count();
+        }
+    }
+
+    @Test
+    public void testDiscard() throws IOException, InterruptedException {
+        final Path root = Files.createTempDirectory("trash-test");
+        try {
+            final Path trashDir = root.resolve("trash");
+            final DirectoryTrash trash = new DirectoryTrash(trashDir);
+
+            final Path dir = Files.createDirectories(root.resolve("data").resolve("version-2"));
+            Files.writeString(dir.resolve("log.1"), "log");
+            trash.discard(root.resolve("data"));
+            Assert.assertFalse("A discarded directory should be gone right away", Files.exists(root.resolve("data")));
+
+            for (int i = 0; i < 100 && countEntries(trashDir) > 0; ++i) {
+                Thread.sleep(20);
+            }
+            Assert.assertEquals("The trash should be emptied in the background", 0, countEntries(trashDir));
+
+            // Discarding a missing directory is a no-op
+            trash.discard(root.resolve("missing"));
+        } finally {
+            DirectoryTrash.deleteTree(root);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package edu.upenn.zootester.ensemble;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+public class LinkProxyTest {
+
+    private static final int TIMEOUT = 2_000;
+
+    private ServerSocket echoServer;
+    private LinkProxy proxy;
+
+    @Before
+    public void setUp() throws IOException {
+        echoServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread echoThread = new Thread(() -> {
+            while (!echoServer.isClosed()) {
+                try {
+                    final Socket socket = echoServer.accept();
+                    final Thread connectionThread = new Thread(() -> {
+                        try (socket) {
+                            socket.getInputStream().transferTo(socket.getOutputStream());
+                        } catch (final IOException ignored) {
+                        }
+                    });
+                    connectionThread.setDaemon(true);
+                    connectionThread.start();
+                } catch (final IOException ignored) {
+                }
+            }
+        });
+        echoThread.setDaemon(true);
+        echoThread.start();
+        proxy = new LinkProxy("test", 0, echoServer.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        proxy.close();
+        echoServer.close();
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), proxy.getListenPort());
+        socket.setSoTimeout(TIMEOUT);
+        return socket;
+    }
+
+    private static void assertEcho(final Socket socket, final int value) throws IOException {
+        new DataOutputStream(socket.getOutputStream()).writeInt(value);
+        Assert.assertEquals(value, new DataInputStream(socket.getInputStream()).readInt());
+    }
+
+    @Test
+    public void testForwarding() throws IOException {
+        try (final Socket socket = connect()) {
+            assertEcho(socket, 1);
+            assertEcho(socket, 2);
+        }
+    }
+
+    @Test
+    public void testPartitionAndHeal() throws IOException {
+        try (final Socket socket = connect()) {
+            assertEcho(socket, 1);
+            proxy.setMode(LinkProxy.Mode.PARTITION);
+            Assert.assertEquals("A partitioned connection should be closed", -1, socket.getInputStream().read());
+        }
+        try (final Socket socket = connect()) {
+            Assert.assertEquals("New connections should be refused", -1, socket.getInputStream().read());
+        }
+        proxy.setMode(LinkProxy.Mode.CONNECTED);
+        try (final Socket socket = connect()) {
+            assertEcho(socket, 3);
+        }
+    }
+
+    @Test
+    public void testDrop() throws IOException {
+        try (final Socket socket = connect()) {
+            assertEcho(socket, 1);
+            proxy.setMode(LinkProxy.Mode.DROP);
+            final OutputStream out = socket.getOutputStream();
+            final InputStream in = socket.getInputStream();
+            out.write(2);
+            socket.setSoTimeout(200);
+            Assert.assertThrows("Dropped traffic should not arrive", SocketTimeoutException.class, in::read);
+        }
+        proxy.setMode(LinkProxy.Mode.CONNECTED);
+        try (final Socket socket = connect()) {
+            assertEcho(socket, 3);
+        }
+    }
+
+    @Test
+    public void testDelay() throws IOException {
+        proxy.setDelay(200);
+        try (final Socket socket = connect()) {
+            final long start = System.currentTimeMillis();
+            assertEcho(socket, 1);
+            final long elapsed = System.currentTimeMillis() - start;
+            Assert.assertTrue("The round trip should be delayed in both directions, took " + elapsed + " ms",
+                    elapsed >= 400);
+        }
+    }
+}
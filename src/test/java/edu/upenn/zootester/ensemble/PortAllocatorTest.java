@@ -0,0 +1,69 @@
+package edu.upenn.zootester.ensemble;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class PortAllocatorTest {
+
+    private static final int BASE_PORT = 23100;
+
+    @Test
+    public void testLeaseAndRelease() throws IOException {
+        final PortAllocator allocator = new PortAllocator(BASE_PORT);
+        final List<Integer> first = allocator.lease(9);
+        Assert.assertEquals("All ports should be distinct", 9, new HashSet<>(first).size());
+
+        final List<Integer> second = allocator.lease(3);
+        Assert.assertTrue("Leased ports should not be handed out twice", second.stream().noneMatch(first::contains));
+
+        allocator.release(first);
+        final List<Integer> third = allocator.lease(9);
+        Assert.assertEquals("Released ports should be reused", new HashSet<>(first), new HashSet<>(third));
+    }
+
+    @Test
+    public void testSkipsOccupiedPorts() throws IOException {
+        final PortAllocator allocator = new PortAllocator(BASE_PORT + 100);
+        try (final ServerSocket occupied = new ServerSocket()) {
+            occupied.bind(new InetSocketAddress(BASE_PORT + 100));
+            final List<Integer> ports = allocator.lease(3);
+            Assert.assertFalse("An occupied port should be skipped", ports.contains(BASE_PORT + 100));
+        }
+    }
+
+    @Test
+    public void testConcurrentLeases() throws InterruptedException {
+        final PortAllocator allocator = new PortAllocator(BASE_PORT + 200);
+        final List<Integer> allPorts = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 10; ++j) {
+                        final List<Integer> ports = allocator.lease(3);
+                        synchronized (allPorts) {
+                            allPorts.addAll(ports);
+                        }
+                    }
+                } catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+        final Set<Integer> distinctPorts = new HashSet<>(allPorts);
+        Assert.assertEquals("Concurrent leases should never share a port", 240, distinctPorts.size());
+    }
+}
@@ -0,0 +1,48 @@
+package edu.upenn.zootester.ensemble;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooDefs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class ZKEnsembleClientTest {
+
+    private static final int ROUNDS = 10;
+
+    private ZKEnsemble zkEnsemble;
+
+    @Before
+    public void setUp() throws IOException {
+        ZKHelper.setTimingProfile(ZKTimingProfile.FAST);
+        zkEnsemble = new ZKEnsemble(3);
+        zkEnsemble.init();
+    }
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        try {
+            zkEnsemble.stopEnsemble();
+        } finally {
+            zkEnsemble.tearDown();
+            ZKHelper.setTimingProfile(ZKTimingProfile.DEFAULT);
+        }
+    }
+
+    @Test
+    public void testReassignedClientsAreConnected() throws Exception {
+        zkEnsemble.startEnsemble();
+        for (int i = 0; i < ROUNDS; ++i) {
+            zkEnsemble.forceReassignment(List.of(i % 3));
+            // Requests right after the wait would fail with ConnectionLoss if a moved client were still
+            // reconnecting
+            for (final int serverId : zkEnsemble.getAllIds()) {
+                zkEnsemble.handleRequest(serverId, (zk, id) -> zk.create("/reassigned-" + id + "-", new byte[0],
+                        ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL));
+            }
+        }
+    }
+}
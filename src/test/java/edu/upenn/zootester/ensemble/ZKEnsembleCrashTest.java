@@ -0,0 +1,126 @@
+package edu.upenn.zootester.ensemble;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooDefs;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class ZKEnsembleCrashTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ZKEnsembleCrashTest.class);
+
+    private static final long TIMEOUT = 20_000;
+    private static final int ROUNDS = 5;
+    private static final int PENDING_WRITES = 2000;
+
+    private ZKEnsemble zkEnsemble;
+
+    @Before
+    public void setUp() throws IOException {
+        ZKHelper.setTimingProfile(ZKTimingProfile.FAST);
+        zkEnsemble = new ZKEnsemble(3);
+        zkEnsemble.init();
+    }
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        try {
+            zkEnsemble.stopEnsemble();
+        } finally {
+            zkEnsemble.tearDown();
+            ZKHelper.setTimingProfile(ZKTimingProfile.DEFAULT);
+        }
+    }
+
+    private int awaitLeader() throws InterruptedException {
+        final int leader = zkEnsemble.waitForLeader(TIMEOUT);
+        Assert.assertTrue("There should be a leader", leader >= 0);
+        return leader;
+    }
+
+    /***
+     * Issues writes to the leader without waiting for them, so that the leader has requests in flight.
+     */
+    private int loadLeader() throws Exception {
+        final int leader = awaitLeader();
+        zkEnsemble.handleRequest(leader, (zk, serverId) -> {
+            for (int i = 0; i < PENDING_WRITES; ++i) {
+                zk.create("/pending", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL,
+                        (rc, path, ctx, name) -> {
+                        }, null);
+            }
+        });
+        Thread.sleep(10);
+        return leader;
+    }
+
+    @Test
+    public void testCrashIsFasterThanStop() throws Exception {
+        zkEnsemble.startEnsemble();
+        final long[] stopNanos = new long[ROUNDS];
+        final long[] crashNanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; ++i) {
+            final int stopped = loadLeader();
+            long start = System.nanoTime();
+            zkEnsemble.stopServers(List.of(stopped));
+            stopNanos[i] = System.nanoTime() - start;
+            zkEnsemble.startServers(List.of(stopped));
+
+            final int crashed = loadLeader();
+            start = System.nanoTime();
+            zkEnsemble.crashServers(List.of(crashed));
+            crashNanos[i] = System.nanoTime() - start;
+            Assert.assertFalse("A crashed server shouldn't serve", zkEnsemble.isServing(crashed));
+            zkEnsemble.startServers(List.of(crashed));
+        }
+        // Medians, since the first rounds also load classes
+        Arrays.sort(stopNanos);
+        Arrays.sort(crashNanos);
+        final long stopMedian = stopNanos[ROUNDS / 2];
+        final long crashMedian = crashNanos[ROUNDS / 2];
+        LOG.info("Stopping a busy leader took {} us and crashing one took {} us (medians)",
+                stopMedian / 1000, crashMedian / 1000);
+        Assert.assertTrue("Crashing should take well below the time of stopping", crashMedian * 4 < stopMedian);
+    }
+
+    @Test
+    public void testSurvivorsRecoverFromCrashedLeader() throws Exception {
+        zkEnsemble.startEnsemble();
+        final int crashed = loadLeader();
+        zkEnsemble.crashServers(List.of(crashed));
+
+        // The crashed leader is cut off right away, so the others elect a new leader among themselves
+        final int leader = awaitLeader();
+        Assert.assertNotEquals("The crashed server shouldn't lead", crashed, leader);
+        // The survivors dropped their clients when they lost their leader, so the write may have to wait for
+        // the leader's client to reconnect
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (true) {
+            try {
+                zkEnsemble.handleRequest(leader, (zk, serverId) ->
+                        zk.create("/survived", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+                break;
+            } catch (final KeeperException.NodeExistsException e) {
+                // A previous attempt was applied even though its connection was lost
+                break;
+            } catch (final KeeperException.ConnectionLossException e) {
+                Assert.assertTrue("The new leader should serve its client", System.currentTimeMillis() < deadline);
+                Thread.sleep(100);
+            }
+        }
+
+        // The crashed server can be restarted once its leftover threads are reaped
+        zkEnsemble.startServers(List.of(crashed));
+        Assert.assertEquals(3, zkEnsemble.totalRunningServers());
+        awaitLeader();
+    }
+}
@@ -0,0 +1,67 @@
+package edu.upenn.zootester.ensemble;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooDefs;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+public class ZKEnsembleLinkTest {
+
+    private static final long TIMEOUT = 20_000;
+
+    private ZKEnsemble zkEnsemble;
+
+    @Before
+    public void setUp() throws IOException {
+        ZKHelper.setTimingProfile(ZKTimingProfile.FAST);
+        zkEnsemble = new ZKEnsemble(3, true);
+        zkEnsemble.init();
+    }
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        try {
+            zkEnsemble.stopEnsemble();
+        } finally {
+            zkEnsemble.tearDown();
+            ZKHelper.setTimingProfile(ZKTimingProfile.DEFAULT);
+        }
+    }
+
+    private static boolean eventually(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+
+    @Test
+    public void testPartitionedFollowerStopsServing() throws Exception {
+        zkEnsemble.startEnsemble();
+        final int leader = zkEnsemble.waitForLeader(TIMEOUT);
+        Assert.assertTrue("There should be a leader", leader >= 0);
+        final int follower = (leader + 1) % 3;
+
+        zkEnsemble.partition(List.of(follower));
+        Assert.assertTrue("The partitioned follower should stop serving",
+                eventually(() -> !zkEnsemble.isServing(follower)));
+        // The remaining majority keeps its leader and serves writes
+        Assert.assertTrue(zkEnsemble.isServing(leader));
+        zkEnsemble.handleRequest(leader, (zk, serverId) ->
+                zk.create("/partitioned", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+
+        zkEnsemble.healAll();
+        Assert.assertTrue("The follower should rejoin once the partition heals",
+                eventually(() -> zkEnsemble.isServing(follower)));
+    }
+}
@@ -0,0 +1,29 @@
+package edu.upenn.zootester.ensemble;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZKTimingProfileTest {
+
+    @Test
+    public void testEncodeDecode() {
+        final ZKTimingProfile calibrated = ZKTimingProfile.FAST.withTickTime("calibrated", 40);
+        final ZKTimingProfile decoded = ZKTimingProfile.forName(calibrated.encode());
+        Assert.assertEquals(calibrated.toString(), decoded.toString());
+        Assert.assertSame(ZKTimingProfile.FAST, ZKTimingProfile.forName("fast"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProfile() {
+        ZKTimingProfile.forName("slow");
+    }
+
+    @Test
+    public void testSessionTimeouts() {
+        // The default profile keeps the 40 s sessions of ZooKeeper's default configuration
+        Assert.assertEquals(40_000, ZKTimingProfile.DEFAULT.getMaxSessionTimeout());
+        Assert.assertEquals(5_000, ZKTimingProfile.FAST.getSessionTimeout());
+        // Calibrated profiles keep the session timeout at the same number of ticks
+        Assert.assertEquals(2_000, ZKTimingProfile.FAST.withTickTime("calibrated", 40).getSessionTimeout());
+    }
+}
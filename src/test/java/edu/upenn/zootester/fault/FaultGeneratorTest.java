@@ -62,4 +62,38 @@ public class FaultGeneratorTest {
         LOG.info("Histogram of samples after {} iterations (it should look uniform): {}",
                 700_000, histogram.toString());
     }
+
+    @Test
+    public void testRewind() {
+        final FaultGenerator faultGenerator =
+                new ExactFaultGenerator(3, 2, 3, new Random());
+        for (int i = 0; i < 1000; ++i) {
+            faultGenerator.reset();
+            final int first = faultGenerator.generate();
+            final FaultGenerator.State state = faultGenerator.getState();
+            final int second = faultGenerator.generate() + faultGenerator.generate();
+            Assert.assertEquals("Total faults should be 3", 3, first + second);
+
+            faultGenerator.setState(state);
+            final int rewoundSecond = faultGenerator.generate() + faultGenerator.generate();
+            Assert.assertEquals("Faults after rewinding should sum up to the same remaining budget",
+                    second, rewoundSecond);
+        }
+    }
+
+    @Test
+    public void testPossibleFaults() {
+        final FaultGenerator faultGenerator = new ExactFaultGenerator(3, 2, 3, new Random());
+        Assert.assertEquals(List.of(0, 1, 2), faultGenerator.possibleFaults());
+        for (int i = 0; i < 1000; ++i) {
+            faultGenerator.reset();
+            final int first = faultGenerator.generate();
+            final List<Integer> possibleFaults = faultGenerator.possibleFaults();
+            final int second = faultGenerator.generate();
+            Assert.assertTrue(second + " should be among " + possibleFaults, possibleFaults.contains(second));
+            Assert.assertEquals(List.of(3 - first - second), faultGenerator.possibleFaults());
+            faultGenerator.generate();
+            Assert.assertEquals(List.of(0), faultGenerator.possibleFaults());
+        }
+    }
 }
@@ -0,0 +1,67 @@
+package edu.upenn.zootester.fault;
+
+import edu.upenn.zootester.harness.EmptyPhase;
+import edu.upenn.zootester.harness.Phase;
+import edu.upenn.zootester.harness.UnconditionalWritePhase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class FaultScheduleEnumeratorTest {
+
+    private static final List<Phase> PHASES = List.of(
+            new UnconditionalWritePhase(1, "/key0", 101),
+            new EmptyPhase(),
+            new UnconditionalWritePhase(2, "/key1", 302));
+
+    @Test
+    public void testSize() {
+        // With a single fault, it is in one of the 3 phases and on one of the 3 servers, and in the two request
+        // phases it is either crashed later or not
+        Assert.assertEquals(3 * 2 + 3 + 3 * 2, new FaultScheduleEnumerator(PHASES, 3, 3, 1).size());
+        Assert.assertEquals(1, new FaultScheduleEnumerator(PHASES, 3, 3, 0).size());
+        // Not enough room for the faults
+        Assert.assertEquals(0, new FaultScheduleEnumerator(PHASES, 3, 1, 4).size());
+    }
+
+    @Test
+    public void testRankUnrank() {
+        final FaultScheduleEnumerator enumerator = new FaultScheduleEnumerator(PHASES, 3, 2, 3);
+        final Set<FaultSchedule> schedules = new HashSet<>();
+        for (long rank = 0; rank < enumerator.size(); ++rank) {
+            final FaultSchedule schedule = enumerator.unrank(rank);
+            int faults = 0;
+            for (final PhaseFaults phaseFaults : schedule.getPhaseFaults()) {
+                Assert.assertTrue(phaseFaults.getServersToCrash().size() <= 2);
+                Assert.assertTrue(phaseFaults.getServersToCrash().containsAll(phaseFaults.getServersToCrashLater()));
+                faults += phaseFaults.getServersToCrash().size();
+            }
+            Assert.assertTrue(schedule.get(1).getServersToCrashLater().isEmpty());
+            Assert.assertEquals(3, faults);
+            Assert.assertEquals(rank, enumerator.rank(schedule));
+            schedules.add(schedule);
+        }
+        Assert.assertEquals("All schedules should be distinct", enumerator.size(), schedules.size());
+    }
+
+    @Test
+    public void testPartition() {
+        final FaultScheduleEnumerator enumerator = new FaultScheduleEnumerator(PHASES, 3, 3, 2);
+        long next = 0;
+        for (int part = 0; part < 7; ++part) {
+            final long[] range = enumerator.partition(part, 7);
+            Assert.assertEquals(next, range[0]);
+            Assert.assertTrue(range[1] - range[0] >= enumerator.size() / 7);
+            next = range[1];
+        }
+        Assert.assertEquals(enumerator.size(), next);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRankTooFewFaults() {
+        new FaultScheduleEnumerator(PHASES, 3, 3, 1).rank(FaultSchedule.decode("/;/;/"));
+    }
+}
@@ -0,0 +1,27 @@
+package edu.upenn.zootester.fault;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class FaultScheduleTest {
+
+    @Test
+    public void testEncodeDecode() {
+        final FaultSchedule schedule = new FaultSchedule(List.of(
+                new PhaseFaults(List.of(0, 2), List.of(2)),
+                new PhaseFaults(List.of(), List.of()),
+                new PhaseFaults(List.of(1), List.of())));
+        Assert.assertEquals("0,2/2;/;1/", schedule.encode());
+        Assert.assertEquals(schedule, FaultSchedule.decode(schedule.encode()));
+
+        final FaultSchedule empty = new FaultSchedule(List.of());
+        Assert.assertEquals(empty, FaultSchedule.decode(empty.encode()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeMalformed() {
+        FaultSchedule.decode("0,2;1/");
+    }
+}
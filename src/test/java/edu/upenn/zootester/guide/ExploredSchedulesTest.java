@@ -0,0 +1,66 @@
+package edu.upenn.zootester.guide;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ExploredSchedulesTest {
+
+    @Test
+    public void testClaim() throws IOException {
+        final Path dir = Files.createTempDirectory("explored-test");
+        try {
+            final Path file = dir.resolve("explored");
+            final ExploredSchedules explored = ExploredSchedules.open(file);
+            final FaultSchedule schedule = FaultSchedule.decode("0/;/;1/1");
+            Assert.assertTrue(explored.claim("harness", schedule));
+            Assert.assertFalse("A schedule should only be claimed once", explored.claim("harness", schedule));
+            Assert.assertTrue("Schedules are explored per harness", explored.claim("other", schedule));
+            Assert.assertSame(explored, ExploredSchedules.open(file));
+
+            // Claims appended by another process show up on the next lookup
+            final Path otherFile = dir.resolve("other-explored");
+            final ExploredSchedules other = ExploredSchedules.open(otherFile);
+            Files.write(otherFile, Files.readAllBytes(file), StandardOpenOption.APPEND);
+            Assert.assertFalse(other.claim("harness", schedule));
+            Assert.assertEquals(2, other.size());
+        } finally {
+            Files.walk(dir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testFinish() throws IOException {
+        final Path dir = Files.createTempDirectory("explored-test");
+        try {
+            final Path file = dir.resolve("explored");
+            final ExploredSchedules explored = ExploredSchedules.open(file);
+            final FaultSchedule passed = FaultSchedule.decode("0/;/");
+            final FaultSchedule failed = FaultSchedule.decode("1/;/");
+            final FaultSchedule interrupted = FaultSchedule.decode("2/;/");
+            Assert.assertTrue(explored.claim("harness", passed));
+            explored.finish("harness", passed, ExecutionOutcome.PASSED);
+            Assert.assertTrue(explored.claim("harness", failed));
+            explored.finish("harness", failed, ExecutionOutcome.FAILED_OTHERWISE);
+            Assert.assertTrue("A schedule that failed otherwise should be tried again",
+                    explored.claim("harness", failed));
+            Assert.assertTrue(explored.claim("harness", interrupted));
+
+            // A process that opens the file later, e.g., to resume the campaign
+            final Path resumedFile = dir.resolve("resumed-explored");
+            Files.write(resumedFile, Files.readAllBytes(file));
+            final ExploredSchedules resumed = ExploredSchedules.open(resumedFile);
+            Assert.assertFalse(resumed.claim("harness", passed));
+            Assert.assertTrue("Unfinished claims of interrupted processes should be ignored",
+                    resumed.claim("harness", interrupted));
+        } finally {
+            Files.walk(dir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+}
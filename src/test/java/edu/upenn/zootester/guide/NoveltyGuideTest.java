@@ -0,0 +1,60 @@
+package edu.upenn.zootester.guide;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class NoveltyGuideTest {
+
+    @Test
+    public void testPrefersNovelSchedules() {
+        final NoveltyGuide guide = new NoveltyGuide();
+        final FaultSchedule stale = FaultSchedule.decode("0/");
+        final FaultSchedule fresh = FaultSchedule.decode("1/");
+        // The stale schedule keeps producing the same outcome
+        for (int i = 0; i < 100; ++i) {
+            guide.record(stale, "same");
+        }
+        Assert.assertEquals(1, guide.getDistinctFingerprints());
+
+        final Random random = new Random(0);
+        int freshChosen = 0;
+        for (int i = 0; i < 1000; ++i) {
+            if (guide.choose(List.of(stale, fresh), random).equals(fresh)) {
+                ++freshChosen;
+            }
+        }
+        Assert.assertTrue("The untried schedule should be preferred, chosen " + freshChosen + " times",
+                freshChosen > 900);
+    }
+
+    @Test
+    public void testSharedOutcomeIsNotNovel() {
+        final NoveltyGuide guide = new NoveltyGuide();
+        final FaultSchedule first = FaultSchedule.decode("0/");
+        final FaultSchedule second = FaultSchedule.decode("1/");
+        final FaultSchedule untried = FaultSchedule.decode("2/");
+        final String outcome = NoveltyGuide.fingerprint(Set.of(0), Set.of(), List.of(Map.of("/key0", 101)), List.of(2));
+        for (int i = 0; i < 100; ++i) {
+            guide.record(first, outcome);
+        }
+        // A different schedule that ends in the same outcome re-observes it
+        guide.record(second, NoveltyGuide.fingerprint(Set.of(0), Set.of(), List.of(Map.of("/key0", 101)), List.of(2)));
+        Assert.assertEquals(1, guide.getDistinctFingerprints());
+
+        final Random random = new Random(0);
+        int untriedChosen = 0;
+        for (int i = 0; i < 1000; ++i) {
+            if (guide.choose(List.of(second, untried), random).equals(untried)) {
+                ++untriedChosen;
+            }
+        }
+        Assert.assertTrue("The schedule with a known outcome should lose weight, the untried one was chosen "
+                + untriedChosen + " times", untriedChosen > 900);
+    }
+}
@@ -75,4 +75,20 @@ public class HarnessTest {
         assertEquals(expected, harness.getPossibleStates(Set.of(0, 1), Set.of()));
         assertEquals(Set.of(Map.of("/key0", 0, "/key1", 201)), harness.getPossibleStates(Set.of(1), Set.of()));
     }
+
+    @Test
+    public void testEncodeDecode() {
+        final Harness harness = new Harness(List.of(
+                new ConditionalWritePhase(1, "/key1", 0, "/key1", 101),
+                new EmptyPhase(),
+                new UnconditionalWritePhase(2, "/key0", 202)
+        ));
+        final String encoded = harness.encode();
+        assertEquals("2|C:1:/key1:0:/key1:101;E;U:2:/key0:202", encoded);
+
+        final Harness decoded = Harness.decode(encoded);
+        assertEquals(harness.toString(), decoded.toString());
+        assertEquals(encoded, decoded.encode());
+        assertEquals(harness.getPossibleStates(Set.of(0, 2), Set.of()), decoded.getPossibleStates(Set.of(0, 2), Set.of()));
+    }
 }
@@ -0,0 +1,64 @@
+package edu.upenn.zootester.schedule;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ClockTest {
+
+    @Test
+    public void testSkipsQuiescentTime() throws InterruptedException {
+        final CompressingClock clock = new CompressingClock(() -> true, 20);
+        final long start = System.currentTimeMillis();
+        final long target = clock.now() + 60_000;
+        clock.advanceTo(target);
+        Assert.assertTrue("The clock should reach the timestamp", clock.now() >= target);
+        Assert.assertTrue("Quiescent time should be skipped", System.currentTimeMillis() - start < 10_000);
+        Assert.assertTrue(clock.getSkippedMillis() > 50_000);
+    }
+
+    @Test
+    public void testRunsInRealTimeWhileBusy() throws InterruptedException {
+        final CompressingClock clock = new CompressingClock(() -> false, 20);
+        final long start = System.currentTimeMillis();
+        clock.advanceTo(clock.now() + 200);
+        Assert.assertTrue("Busy time shouldn't be skipped", System.currentTimeMillis() - start >= 200);
+        Assert.assertEquals(0, clock.getSkippedMillis());
+    }
+
+    @Test
+    public void testVirtualClock() throws InterruptedException {
+        final VirtualClock clock = new VirtualClock(() -> true, 5, 1_000);
+        Assert.assertEquals(0, clock.now());
+        final long start = System.currentTimeMillis();
+        clock.advanceTo(3_600_000);
+        Assert.assertEquals(3_600_000, clock.now());
+        Assert.assertTrue("Virtual time shouldn't be slept through", System.currentTimeMillis() - start < 1_000);
+        clock.advanceTo(1_000);
+        Assert.assertEquals("The clock shouldn't go backwards", 3_600_000, clock.now());
+    }
+
+    @Test
+    public void testVirtualClockTimesOut() throws InterruptedException {
+        final VirtualClock clock = new VirtualClock(() -> false, 5, 50);
+        final long start = System.currentTimeMillis();
+        clock.advanceTo(10);
+        Assert.assertEquals(10, clock.now());
+        Assert.assertTrue("The clock should wait for the system to settle", System.currentTimeMillis() - start >= 50);
+    }
+
+    @Test
+    public void testIntervalMeans() {
+        final Random random = new Random(42);
+        for (final IntervalDistribution distribution : IntervalDistribution.values()) {
+            long sum = 0;
+            for (int i = 0; i < 10_000; ++i) {
+                final long interval = distribution.sample(random, 2_000);
+                Assert.assertTrue(interval >= 0);
+                sum += interval;
+            }
+            Assert.assertEquals(distribution.name(), 2_000.0, sum / 10_000.0, 100.0);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package edu.upenn.zootester.trace;
+
+import edu.upenn.zootester.harness.EmptyPhase;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.harness.RequestOutcome;
+import edu.upenn.zootester.harness.UnconditionalWritePhase;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+public class TraceTest {
+
+    private static Trace record(final int servers) {
+        final Harness harness = new Harness(List.of(new UnconditionalWritePhase(1, "/key0", 101), new EmptyPhase()));
+        final long[] now = {0};
+        final TraceRecorder recorder = new TraceRecorder(harness.encode(), servers, () -> now[0]);
+        recorder.start(List.of(0, 1, 2));
+        now[0] = 1_000;
+        recorder.request(0, false);
+        now[0] = 300_000;
+        recorder.crash(List.of(1));
+        recorder.outcome(0, RequestOutcome.UNKNOWN);
+        // The clock went backwards, e.g., when read concurrently
+        now[0] = 200_000;
+        recorder.stop(List.of(0, 2));
+        return recorder.finish(ExecutionOutcome.FAILED_ASSERTION);
+    }
+
+    @Test
+    public void testRecorder() {
+        final Trace trace = record(3);
+        Assert.assertEquals(3, trace.getServers());
+        Assert.assertEquals(5, trace.getEvents().size());
+        Assert.assertEquals(300_000, trace.getEvents().get(4).getTime());
+        Assert.assertEquals(1, trace.getOutcomeEvents().size());
+        Assert.assertEquals(RequestOutcome.UNKNOWN, trace.getOutcomeEvents().get(0).getOutcome());
+        Assert.assertFalse(TraceRecorder.disabled().isEnabled());
+    }
+
+    private static Trace roundTrip(final Trace trace, final ByteArrayOutputStream bytes) throws IOException {
+        trace.write(new DataOutputStream(bytes));
+        return Trace.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Trace trace = record(3);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Trace read = roundTrip(trace, bytes);
+        Assert.assertEquals(trace, read);
+        Assert.assertEquals(3, read.getServers());
+        // The header with the ensemble size, the harness, and at most 6 bytes per event
+        Assert.assertTrue(bytes.size() <= 10 + trace.getEncodedHarness().length() + 6 * trace.getEvents().size());
+
+        // The same steps on a larger ensemble make another trace
+        final Trace larger = roundTrip(record(5), new ByteArrayOutputStream());
+        Assert.assertEquals(5, larger.getServers());
+        Assert.assertNotEquals(read, larger);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotATrace() throws IOException {
+        Trace.read(new DataInputStream(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6})));
+    }
+}
@@ -0,0 +1,94 @@
+package edu.upenn.zootester.worker;
+
+import edu.upenn.zootester.harness.EmptyPhase;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.harness.UnconditionalWritePhase;
+import edu.upenn.zootester.scenario.ExecutionOutcome;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class CampaignJournalTest {
+
+    private static final String PLAN = "threads=2 executions=3 exhaustive=false part=1/1";
+
+    @Test
+    public void testResume() throws IOException {
+        final Path file = Files.createTempFile("journal-test", ".tsv");
+        try {
+            final List<Harness> harnesses = List.of(
+                    new Harness(List.of(new UnconditionalWritePhase(1, "/key0", 101), new EmptyPhase())),
+                    new Harness(List.of(new EmptyPhase(), new UnconditionalWritePhase(2, "/key1", 202))));
+            try (final CampaignJournal journal = CampaignJournal.create(file, "harness", PLAN, 42, harnesses, false)) {
+                journal.record(1, 7, ExecutionOutcome.PASSED);
+                journal.record(0, -3, ExecutionOutcome.FAILED_ASSERTION);
+            }
+            // The JVM died while writing a record
+            Files.writeString(file, "execution\tharness\t1|E", StandardOpenOption.APPEND);
+
+            try (final CampaignJournal journal = CampaignJournal.resume(file, "harness", PLAN)) {
+                Assert.assertEquals(42, journal.getSeed());
+                Assert.assertEquals(2, journal.getHarnesses().size());
+                Assert.assertEquals(harnesses.get(1).encode(), journal.getHarnesses().get(1).encode());
+                Assert.assertEquals(2, journal.getRecords().size());
+                final CampaignJournal.Record record = journal.getRecords().get(1);
+                Assert.assertEquals(0, record.harness);
+                Assert.assertEquals(-3, record.seed);
+                Assert.assertEquals(ExecutionOutcome.FAILED_ASSERTION, record.outcome);
+                journal.record(0, 5, ExecutionOutcome.SKIPPED);
+            }
+
+            try (final CampaignJournal journal = CampaignJournal.resume(file, "harness", PLAN)) {
+                Assert.assertEquals("The torn line shouldn't swallow later records", 3, journal.getRecords().size());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testResumeOtherScenario() throws IOException {
+        final Path file = Files.createTempFile("journal-test", ".tsv");
+        try {
+            CampaignJournal.create(file, "harness", PLAN, 42, List.of(), false).close();
+            CampaignJournal.resume(file, "baseline", PLAN);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testResumeOtherPlan() throws IOException {
+        final Path file = Files.createTempFile("journal-test", ".tsv");
+        try {
+            CampaignJournal.create(file, "harness", PLAN, 42, List.of(), false).close();
+            CampaignJournal.resume(file, "harness", "threads=4 executions=3 exhaustive=false part=1/1");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCreateKeepsExistingJournal() throws IOException {
+        final Path file = Files.createTempFile("journal-test", ".tsv");
+        try {
+            CampaignJournal.create(file, "harness", PLAN, 42, List.of(), false).close();
+            try {
+                CampaignJournal.create(file, "harness", PLAN, 7, List.of(), false).close();
+                Assert.fail("An existing journal shouldn't be overwritten without asking");
+            } catch (final IOException expected) {
+            }
+            CampaignJournal.create(file, "harness", PLAN, 7, List.of(), true).close();
+            try (final CampaignJournal journal = CampaignJournal.resume(file, "harness", PLAN)) {
+                Assert.assertEquals(7, journal.getSeed());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
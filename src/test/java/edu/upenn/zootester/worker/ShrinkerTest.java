@@ -0,0 +1,39 @@
+package edu.upenn.zootester.worker;
+
+import edu.upenn.zootester.fault.FaultSchedule;
+import edu.upenn.zootester.harness.EmptyPhase;
+import edu.upenn.zootester.harness.Harness;
+import edu.upenn.zootester.harness.UnconditionalWritePhase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ShrinkerTest {
+
+    @Test
+    public void testReductions() {
+        final Harness harness = new Harness(List.of(
+                new UnconditionalWritePhase(1, "/key0", 101),
+                new EmptyPhase()), 3);
+        final Shrinker.Candidate candidate =
+                new Shrinker.Candidate(harness, FaultSchedule.decode("0,2/2;1/"), "original");
+        Assert.assertEquals(2 + 1 + 3, candidate.size());
+
+        final List<Shrinker.Candidate> reductions = Shrinker.reductions(candidate);
+        final List<String> encoded = reductions.stream()
+                .map(reduction -> reduction.getHarness().encode() + " " + reduction.getSchedule().encode())
+                .collect(Collectors.toList());
+        Assert.assertEquals(List.of(
+                "3|E 1/",
+                "3|U:1:/key0:101 0,2/2",
+                "3|E;E 0,2/;1/",
+                "3|U:1:/key0:101;E 2/2;1/",
+                "3|U:1:/key0:101;E 0/;1/",
+                "3|U:1:/key0:101;E 0,2/2;/"), encoded);
+        for (final Shrinker.Candidate reduction : reductions) {
+            Assert.assertTrue("Every reduction should be smaller", reduction.size() < candidate.size());
+        }
+    }
+}